@@ -8,8 +8,13 @@ variableAssignment
     : (LOWER_IDENT | CAPITAL_IDENT) ASSIGNMENT_OPERATOR calculatableValue SEMICOLON
     ;
 
+importStatement
+    : IMPORT STRING SEMICOLON
+    ;
+
 statement
-    : variableAssignment
+    : importStatement
+    | variableAssignment
     | ifStatement
     | styleRule
     | declaration
@@ -33,8 +38,10 @@ styleRule
     : selector block
     ;
 
+/* an id that is also valid hex (#abcdef, #deadbeef) is lexed as COLOR */
 selector
     : ID_IDENT
+    | COLOR
     | CLASS_IDENT
     | LOWER_IDENT
     | CAPITAL_IDENT
@@ -65,6 +72,8 @@ value
     : COLOR
     | PIXELSIZE
     | PERCENTAGE
+    | EMSIZE
+    | REMSIZE
     | SCALAR
     | TRUE
     | FALSE
@@ -77,6 +86,8 @@ value
 /* --- LEXER --- */
 
 IF: 'if';
+IMPORT: '@import';
+STRING: '"' ~["\r\n]* '"';
 ELSE: 'else';
 BOX_BRACKET_OPEN: '[';
 BOX_BRACKET_CLOSE: ']';
@@ -85,12 +96,17 @@ BOX_BRACKET_CLOSE: ']';
 TRUE: 'true';
 FALSE: 'false';
 
-PIXELSIZE: [0-9]+ 'px';
-PERCENTAGE: [0-9]+ '%';
-SCALAR: [0-9]+;
-
-/* accept uppercase hex as well */
-COLOR: '#' [0-9a-fA-F] [0-9a-fA-F] [0-9a-fA-F] [0-9a-fA-F] [0-9a-fA-F] [0-9a-fA-F] ;
+/* numbers may have decimals, the compiler keeps three of them */
+PIXELSIZE: NUMBER 'px';
+PERCENTAGE: NUMBER '%';
+EMSIZE: NUMBER 'em';
+REMSIZE: NUMBER 'rem';
+SCALAR: NUMBER;
+fragment NUMBER: [0-9]+ ('.' [0-9]+)?;
+
+/* accept uppercase hex as well, and an optional alpha pair (#rrggbbaa) */
+COLOR: '#' HEX HEX HEX HEX HEX HEX (HEX HEX)? ;
+fragment HEX: [0-9a-fA-F];
 
 ID_IDENT: '#' [a-zA-Z0-9\-]+;
 CLASS_IDENT: '.' [a-zA-Z0-9\-]+;
@@ -20,4 +20,8 @@ public class HANStack<T> implements IHANStack<T> {
         if (deque.isEmpty()) throw new EmptyStackException();
         return deque.peekFirst();
     }
-}
\ No newline at end of file
+
+    public boolean isEmpty() {
+        return deque.isEmpty();
+    }
+}
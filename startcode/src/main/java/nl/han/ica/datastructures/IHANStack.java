@@ -18,4 +18,9 @@ public interface IHANStack<T> {
      * @return value at the top of the stack
      */
     T peek();
+
+    /**
+     * @return true when the stack holds no values
+     */
+    boolean isEmpty();
 }
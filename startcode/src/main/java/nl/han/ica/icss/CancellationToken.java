@@ -0,0 +1,62 @@
+package nl.han.ica.icss;
+
+import java.time.Duration;
+
+/**
+ * Lets a caller stop a compile that is still running, directly or with a deadline.
+ * The compiler phases call {@link #throwIfCancelled()} between phases and every so many
+ * nodes, so a compile stops shortly after the token is cancelled or the deadline passes.
+ */
+public final class CancellationToken {
+
+    public enum Reason {
+        CANCELLED,
+        DEADLINE
+    }
+
+    /** A token that is never cancelled and has no deadline. */
+    public static final CancellationToken NONE = new CancellationToken(false, 0);
+
+    private final boolean hasDeadline;
+    // in System.nanoTime tijd
+    private final long deadline;
+    private volatile boolean cancelled = false;
+
+    private CancellationToken(boolean hasDeadline, long deadline) {
+        this.hasDeadline = hasDeadline;
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return a token without a deadline, that only stops when {@link #cancel()} is called
+     */
+    public static CancellationToken create() {
+        return new CancellationToken(false, 0);
+    }
+
+    public static CancellationToken withTimeout(Duration timeout) {
+        return new CancellationToken(true, System.nanoTime() + timeout.toNanos());
+    }
+
+    public void cancel() {
+        if (this == NONE) throw new IllegalStateException("CancellationToken.NONE cannot be cancelled");
+        cancelled = true;
+    }
+
+    /**
+     * @return why the work should stop, or null when it may go on
+     */
+    public Reason reason() {
+        if (cancelled) return Reason.CANCELLED;
+        // verschil vergelijken, nanoTime mag overlopen
+        if (hasDeadline && System.nanoTime() - deadline >= 0) return Reason.DEADLINE;
+        return null;
+    }
+
+    public void throwIfCancelled() {
+        Reason reason = reason();
+        if (reason != null) {
+            throw new CompilationCancelledException(reason);
+        }
+    }
+}
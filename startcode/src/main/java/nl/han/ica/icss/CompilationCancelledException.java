@@ -0,0 +1,17 @@
+package nl.han.ica.icss;
+
+/**
+ * Thrown from inside a compiler phase when its {@link CancellationToken} was cancelled
+ * or its deadline passed.
+ */
+public class CompilationCancelledException extends RuntimeException {
+
+    public final CancellationToken.Reason reason;
+
+    public CompilationCancelledException(CancellationToken.Reason reason) {
+        // geen stack trace nodig, zoals bij ErrorLimitReachedException
+        super(reason == CancellationToken.Reason.DEADLINE ? "Deadline exceeded" : "Compilation cancelled",
+                null, false, false);
+        this.reason = reason;
+    }
+}
@@ -1,12 +1,19 @@
 package nl.han.ica.icss;
 
 import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.binary.ASTReader;
+import nl.han.ica.icss.ast.binary.ASTWriter;
+import nl.han.ica.icss.checker.Annotations;
 import nl.han.ica.icss.checker.Checker;
-import nl.han.ica.icss.checker.SemanticError;
+import nl.han.ica.icss.diagnostics.Diagnostic;
+import nl.han.ica.icss.diagnostics.DiagnosticCollector;
+import nl.han.ica.icss.diagnostics.ErrorLimitReachedException;
+import nl.han.ica.icss.events.PhaseEvent;
 import nl.han.ica.icss.generator.Generator;
 import nl.han.ica.icss.parser.ASTListener;
 import nl.han.ica.icss.parser.ICSSLexer;
 import nl.han.ica.icss.parser.ICSSParser;
+import nl.han.ica.icss.parser.MappedCharStreams;
 import nl.han.ica.icss.transforms.Evaluator;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
@@ -15,28 +22,75 @@ import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class Pipeline implements ANTLRErrorListener {
 
+    // de geparste boom; wordt door transform niet veranderd
     private AST ast;
+    // resultaat van de laatste transform, null als er nog niet getransformeerd is
+    private AST transformedAST;
     private boolean parsed = false;
     private boolean checked = false;
     private boolean transformed = false;
-    private List<String> errors;
+    private boolean parallel = false;
+    // resultaat van de laatste check; de AST zelf bevat geen checker fouten
+    private Annotations annotations;
+    private final DiagnosticCollector diagnostics;
 
     public Pipeline() {
-        errors = new ArrayList<>();
+        diagnostics = new DiagnosticCollector();
     }
 
+    /**
+     * @return the transformed AST after {@link #transform()}, otherwise the parsed AST
+     */
     public AST getAST() {
+        return transformedAST != null ? transformedAST : ast;
+    }
+
+    /**
+     * @return the errors, types and variable bindings of the last check, null before checking
+     */
+    public Annotations getAnnotations() {
+        return annotations;
+    }
+
+    /**
+     * @return the parsed AST; transforming does not change it, so it can be transformed again
+     */
+    public AST getSourceAST() {
         return ast;
     }
     public List<String> getErrors() {
+        List<String> errors = new ArrayList<>(diagnostics.size() + 1);
+        for (Diagnostic diagnostic : diagnostics.getDiagnostics()) {
+            errors.add(diagnostic.toString());
+        }
+        if (diagnostics.isLimitReached()) {
+            errors.add("Too many errors, stopped after " + diagnostics.getMaxErrors());
+        }
         return errors;
     }
+    public DiagnosticCollector getDiagnostics() {
+        return diagnostics;
+    }
+    /**
+     * Sets the number of errors after which a phase is stopped, 0 for no limit.
+     */
+    public void setMaxErrors(int maxErrors) {
+        diagnostics.setMaxErrors(maxErrors);
+    }
     public boolean isParsed() {
         return parsed;
     }
@@ -46,77 +100,184 @@ public class Pipeline implements ANTLRErrorListener {
     public boolean isTransformed() {
         return transformed;
     }
+    public boolean isParallel() {
+        return parallel;
+    }
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
 
     public void parseString(String input) {
+        parse(CharStreams.fromString(input));
+    }
+
+    /**
+     * Parses a UTF-8 file. The file is memory-mapped and decoded straight into the lexer's
+     * input buffer, without an intermediate String.
+     */
+    public void parseFile(Path file) throws IOException {
+        parse(MappedCharStreams.fromPath(file));
+    }
+
+    /**
+     * Writes the current AST in the binary format, so a later run can skip parsing.
+     */
+    public void saveAST(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            ASTWriter.write(getAST(), annotations, out);
+        }
+    }
+
+    /**
+     * Loads an AST written by {@link #saveAST(Path)} in place of parsing. Errors and
+     * positions stored with the nodes come back as they were saved.
+     */
+    public void loadAST(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            this.ast = ASTReader.read(in);
+        }
+        diagnostics.clear();
+        annotations = null;
+        transformedAST = null;
+        parsed = true;
+        checked = transformed = false;
+    }
+
+    private void parse(CharStream inputStream) {
 
         //Lex (with Antlr's generated lexer)
-        CharStream inputStream = CharStreams.fromString(input);
         ICSSLexer lexer = new ICSSLexer(inputStream);
         lexer.removeErrorListeners();
         lexer.addErrorListener(this);
-        errors.clear();
+        diagnostics.clear();
         try {
             CommonTokenStream tokens = new CommonTokenStream(lexer);
+            // alle tokens vooraf lezen, zodat lexen en parsen apart te meten zijn
+            PhaseEvent lexing = PhaseEvent.start(PhaseEvent.LEX);
+            try {
+                tokens.fill();
+            } finally {
+                lexing.commit();
+            }
 
             //Parse (with Antlr's generated parser)
             ICSSParser parser = new ICSSParser(tokens);
             parser.removeErrorListeners();
             parser.addErrorListener(this);
 
-            ParseTree parseTree = parser.stylesheet();
+            ParseTree parseTree;
+            PhaseEvent parsing = PhaseEvent.start(PhaseEvent.PARSE);
+            try {
+                parseTree = parser.stylesheet();
+            } finally {
+                parsing.commit();
+            }
 
             //Extract AST from the Antlr parse tree
-            ASTListener listener = new ASTListener();
-            ParseTreeWalker walker = new ParseTreeWalker();
-            walker.walk(listener, parseTree);
+            PhaseEvent walking = PhaseEvent.start(PhaseEvent.WALK);
+            try {
+                ASTListener listener = new ASTListener();
+                ParseTreeWalker walker = new ParseTreeWalker();
+                walker.walk(listener, parseTree);
 
-            this.ast = listener.getAST();
+                this.ast = listener.getAST();
+            } finally {
+                walking.commit();
+            }
 
         } catch (RecognitionException e) {
             this.ast = new AST();
-            errors.add(e.getMessage());
+            reportQuietly(Diagnostic.syntax(0, 0, e.getMessage()));
 
         } catch (ParseCancellationException e) {
             this.ast = new AST();
-            errors.add("Syntax error");
+            reportQuietly(Diagnostic.syntax(0, 0, "Syntax error"));
+
+        } catch (ErrorLimitReachedException e) {
+            this.ast = new AST();
         }
-        parsed = errors.isEmpty();
+        annotations = null;
+        transformedAST = null;
+        parsed = diagnostics.isEmpty();
         checked = transformed = false;
     }
+    // voor fouten die na het afbreken van een fase nog gemeld worden
+    private void reportQuietly(Diagnostic diagnostic) {
+        try {
+            diagnostics.report(diagnostic);
+        } catch (ErrorLimitReachedException ignored) { }
+    }
+
     public boolean check() {
+        return check(new Annotations());
+    }
+
+    /**
+     * Checks the AST into annotations that may already hold errors found before checking,
+     * such as the imports the ModuleCompiler could not link. Those errors are not reported again.
+     */
+    public boolean check(Annotations found) {
             if(ast == null)
                 return false;
 
-           (new Checker()).check(this.ast);
-
-            ArrayList<SemanticError> errors = this.ast.getErrors();
-            if (!errors.isEmpty()) {
-                for (SemanticError e : errors) {
-                    this.errors.add(e.toString());
-                }
+            int before = diagnostics.size();
+            Checker checker = new Checker(diagnostics);
+            PhaseEvent event = PhaseEvent.start(PhaseEvent.CHECK);
+            try {
+                checker.check(this.ast, found);
+            } catch (ErrorLimitReachedException e) {
+                // de checker is gestopt, de gevonden fouten staan al in diagnostics
+            } finally {
+                event.commit();
             }
+            annotations = checker.getAnnotations();
+            transformedAST = null;
 
-            checked = errors.isEmpty();
+            checked = diagnostics.size() == before && !diagnostics.isLimitReached();
             transformed = false;
-            return errors.isEmpty();
+            return checked;
     }
 
     public void clearErrors(){
-        errors.clear();
+        diagnostics.clear();
     }
 
     public void transform() {
         if(ast == null)
             return;
 
-        (new Evaluator()).apply(ast);
+        PhaseEvent event = PhaseEvent.start(PhaseEvent.TRANSFORM);
+        try {
+            Evaluator evaluator = new Evaluator(parallel ? ForkJoinPool.commonPool() : null);
+            transformedAST = evaluator.apply(ast);
+        } finally {
+            event.commit();
+        }
 
 
-        transformed = errors.isEmpty();
+        transformed = diagnostics.isEmpty();
     }
     public String generate() {
-        Generator generator = new Generator();
-        return generator.generate(ast);
+        Generator generator = new Generator(parallel ? ForkJoinPool.commonPool() : null);
+        PhaseEvent event = PhaseEvent.start(PhaseEvent.GENERATE);
+        try {
+            return generator.generate(getAST());
+        } finally {
+            event.commit();
+        }
+    }
+
+    public void generate(Path output) throws IOException {
+        Generator generator = new Generator(parallel ? ForkJoinPool.commonPool() : null);
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            PhaseEvent event = PhaseEvent.start(PhaseEvent.GENERATE);
+            try {
+                generator.generate(getAST(), channel);
+            } finally {
+                event.commit();
+            }
+        }
     }
 
     //Catch ANTLR errors
@@ -138,6 +299,6 @@ public class Pipeline implements ANTLRErrorListener {
     @Override
     public void syntaxError(Recognizer<?, ?> arg0, Object arg1, int arg2,
                             int arg3, String arg4, RecognitionException arg5) {
-        errors.add("Syntax error: " + arg4);
+        diagnostics.report(Diagnostic.syntax(arg2, arg3 + 1, arg4));
     }
 }
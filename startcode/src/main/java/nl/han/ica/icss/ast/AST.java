@@ -1,5 +1,7 @@
 package nl.han.ica.icss.ast;
 
+import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.datastructures.IHANStack;
 import nl.han.ica.icss.checker.SemanticError;
 
 import java.util.ArrayList;
@@ -21,16 +23,20 @@ public class AST {
 	}
     public ArrayList<SemanticError> getErrors() {
 	    ArrayList<SemanticError> errors = new ArrayList<>();
-        collectErrors(errors,root);
+	    // pre-order met een expliciete stack, zodat diepe bomen de Java stack niet opmaken
+	    IHANStack<ASTNode> pending = new HANStack<>();
+	    pending.push(root);
+	    while (!pending.isEmpty()) {
+	        ASTNode node = pending.pop();
+	        if (node.hasError()) {
+	            errors.add(node.getError());
+	        }
+	        ArrayList<ASTNode> children = node.getChildren();
+	        for (int i = children.size() - 1; i >= 0; i--) {
+	            if (children.get(i) != null) pending.push(children.get(i));
+	        }
+	    }
         return errors;
-    }
-    private void collectErrors(ArrayList<SemanticError> errors, ASTNode node) {
-	    if(node.hasError()) {
-	        errors.add(node.getError());
-        }
-        for(ASTNode child: node.getChildren()) {
-	        collectErrors(errors,child);
-        }
     }
 	@Override
 	public String toString() {
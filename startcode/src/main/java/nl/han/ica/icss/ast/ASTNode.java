@@ -1,5 +1,7 @@
 package nl.han.ica.icss.ast;
 
+import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.datastructures.IHANStack;
 import nl.han.ica.icss.checker.SemanticError;
 
 import java.util.ArrayList;
@@ -8,6 +10,9 @@ import java.util.List;
 public class ASTNode {
 
     private SemanticError error = null;
+    // positie in de bron, 0 als de node niet uit een parse komt
+    private int line = 0;
+    private int column = 0;
 
     /*
      This method is used in the GUI to create an appropriate label
@@ -50,36 +55,103 @@ public class ASTNode {
         return error != null;
     }
 
-	@Override
-	public String toString() {
-		StringBuilder result = new StringBuilder();
-		toString(result);
-		return result.toString();
-	}
-	private void toString(StringBuilder builder) {
-		builder.append("[");
-		builder.append(getNodeLabel());	
-		builder.append("|");
-		for(ASTNode child : getChildren()) {
-			child.toString(builder);
-		}	
-		builder.append("]");
-	}
-
-	@Override
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public ASTNode setPosition(int line, int column) {
+        this.line = line;
+        this.column = column;
+        return this;
+    }
+
+    // markeert in toString het einde van de kinderen van een node
+    private static final ASTNode CLOSE = new ASTNode();
+
+    /*
+     De traversals hieronder gebruiken een expliciete stack in plaats van recursie,
+     zodat ook heel diepe bomen (lange optelketens, diep geneste ifs) passen.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        IHANStack<ASTNode> pending = new HANStack<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            ASTNode node = pending.pop();
+            if (node == CLOSE) {
+                builder.append("]");
+                continue;
+            }
+            builder.append("[");
+            builder.append(node.getNodeLabel());
+            builder.append("|");
+            pending.push(CLOSE);
+            List<ASTNode> children = node.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                if (children.get(i) != null) pending.push(children.get(i));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Two nodes are equal when they have the same class, the same own values (see
+     * {@link #sameNode(ASTNode)}) and pairwise equal children.
+     */
+    @Override
     public boolean equals(Object o) {
-        if(! (o instanceof ASTNode))
-            return false;
-        //Compare all children
-        List<ASTNode> thisChildren = this.getChildren();
-        List<ASTNode> otherChildren = ((ASTNode) o).getChildren();
-        if(otherChildren.size() != thisChildren.size())
-            return false;
-        for(int i = 0; i < thisChildren.size(); i++ ) {
-            if(!thisChildren.get(i).equals(otherChildren.get(i))) {
-                return false;
+        if (this == o) return true;
+        if (!(o instanceof ASTNode)) return false;
+        IHANStack<ASTNode[]> pairs = new HANStack<>();
+        pairs.push(new ASTNode[]{this, (ASTNode) o});
+        while (!pairs.isEmpty()) {
+            ASTNode[] pair = pairs.pop();
+            if (pair[0] == pair[1]) continue;
+            if (pair[0] == null || pair[1] == null || !pair[0].sameNode(pair[1])) return false;
+            List<ASTNode> thisChildren = pair[0].getChildren();
+            List<ASTNode> otherChildren = pair[1].getChildren();
+            if (thisChildren.size() != otherChildren.size()) return false;
+            for (int i = thisChildren.size() - 1; i >= 0; i--) {
+                pairs.push(new ASTNode[]{thisChildren.get(i), otherChildren.get(i)});
             }
         }
         return true;
     }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        IHANStack<ASTNode> pending = new HANStack<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            ASTNode node = pending.pop();
+            List<ASTNode> children = node.getChildren();
+            hash = 31 * (31 * hash + node.nodeHashCode()) + children.size();
+            for (ASTNode child : children) {
+                if (child != null) pending.push(child);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Compares the values of this node itself, not its children. Subclasses with values of
+     * their own (names, literal values) extend this.
+     * @param other a node, never null
+     */
+    protected boolean sameNode(ASTNode other) {
+        return getClass() == other.getClass();
+    }
+
+    /**
+     * The hash of the values compared by {@link #sameNode(ASTNode)}.
+     */
+    protected int nodeHashCode() {
+        return getClass().getName().hashCode();
+    }
 }
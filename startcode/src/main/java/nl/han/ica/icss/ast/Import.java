@@ -0,0 +1,32 @@
+package nl.han.ica.icss.ast;
+
+import java.util.Objects;
+
+/**
+ * An import makes the global variables of another ICSS file available, e.g. @import "colors.icss";
+ * The path is relative to the importing file.
+ */
+public class Import extends ASTNode {
+
+    public String path;
+
+    public Import(String path) {
+        super();
+        this.path = path;
+    }
+
+    @Override
+    public String getNodeLabel() {
+        return "Import (" + path + ")";
+    }
+
+    @Override
+    protected boolean sameNode(ASTNode other) {
+        return super.sameNode(other) && Objects.equals(path, ((Import) other).path);
+    }
+
+    @Override
+    protected int nodeHashCode() {
+        return Objects.hashCode(path);
+    }
+}
@@ -1,4 +1,13 @@
 package nl.han.ica.icss.ast;
 
+import nl.han.ica.icss.ast.types.ExpressionType;
+
 public abstract class Literal extends Expression {
+
+    /**
+     * @return the type of this value, UNDEFINED when it has none
+     */
+    public ExpressionType getType() {
+        return ExpressionType.UNDEFINED;
+    }
 }
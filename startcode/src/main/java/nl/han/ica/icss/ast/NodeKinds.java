@@ -0,0 +1,98 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.DimensionLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.ast.types.Unit;
+
+/**
+ * The kinds of AST node as small numbers, shared by the binary format and the flat AST.
+ *
+ * The binary format stores these numbers in files: never renumber a kind, give a new one
+ * the next free number (at most 63, the binary format keeps two flag bits in the same byte).
+ * Booleans have a kind per value.
+ */
+public final class NodeKinds {
+
+    public static final byte NULL = 0;
+    public static final byte STYLESHEET = 1;
+    public static final byte STYLERULE = 2;
+    public static final byte DECLARATION = 3;
+    public static final byte VARIABLE_ASSIGNMENT = 4;
+    public static final byte IF_CLAUSE = 5;
+    public static final byte ELSE_CLAUSE = 6;
+    public static final byte IMPORT = 7;
+    public static final byte PROPERTY_NAME = 8;
+    public static final byte VARIABLE_REFERENCE = 9;
+    public static final byte ADD = 10;
+    public static final byte SUBTRACT = 11;
+    public static final byte MULTIPLY = 12;
+    public static final byte PIXEL = 13;
+    public static final byte PERCENTAGE = 14;
+    public static final byte SCALAR = 15;
+    public static final byte COLOR = 16;
+    public static final byte FALSE = 17;
+    public static final byte TRUE = 18;
+    public static final byte TAG_SELECTOR = 19;
+    public static final byte CLASS_SELECTOR = 20;
+    public static final byte ID_SELECTOR = 21;
+    public static final byte EM = 22;
+    public static final byte REM = 23;
+
+    private NodeKinds() { }
+
+    /**
+     * @throws IllegalArgumentException for a node class without a kind
+     */
+    public static byte of(ASTNode node) {
+        if (node instanceof Stylesheet) return STYLESHEET;
+        if (node instanceof Stylerule) return STYLERULE;
+        if (node instanceof Declaration) return DECLARATION;
+        if (node instanceof VariableAssignment) return VARIABLE_ASSIGNMENT;
+        if (node instanceof IfClause) return IF_CLAUSE;
+        if (node instanceof ElseClause) return ELSE_CLAUSE;
+        if (node instanceof Import) return IMPORT;
+        if (node instanceof PropertyName) return PROPERTY_NAME;
+        if (node instanceof VariableReference) return VARIABLE_REFERENCE;
+        if (node instanceof AddOperation) return ADD;
+        if (node instanceof SubtractOperation) return SUBTRACT;
+        if (node instanceof MultiplyOperation) return MULTIPLY;
+        if (node instanceof DimensionLiteral) return of(((DimensionLiteral) node).unit);
+        if (node instanceof ColorLiteral) return COLOR;
+        if (node instanceof BoolLiteral) return ((BoolLiteral) node).value ? TRUE : FALSE;
+        if (node instanceof TagSelector) return TAG_SELECTOR;
+        if (node instanceof ClassSelector) return CLASS_SELECTOR;
+        if (node instanceof IdSelector) return ID_SELECTOR;
+        throw new IllegalArgumentException("No node kind for " + node.getClass().getSimpleName());
+    }
+
+    public static byte of(Unit unit) {
+        switch (unit) {
+            case PIXEL: return PIXEL;
+            case PERCENTAGE: return PERCENTAGE;
+            case SCALAR: return SCALAR;
+            case EM: return EM;
+            default: return REM;
+        }
+    }
+
+    /**
+     * @return the unit of a number kind, null for other kinds
+     */
+    public static Unit unitOf(int kind) {
+        switch (kind) {
+            case PIXEL: return Unit.PIXEL;
+            case PERCENTAGE: return Unit.PERCENTAGE;
+            case SCALAR: return Unit.SCALAR;
+            case EM: return Unit.EM;
+            case REM: return Unit.REM;
+            default: return null;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package nl.han.ica.icss.ast;
 
+import java.util.Objects;
+
 public class PropertyName extends ASTNode {
 
     public String name;
@@ -17,4 +19,14 @@ public class PropertyName extends ASTNode {
     public String getNodeLabel() {
         return "Property: (" + name + ")";
     }
+
+    @Override
+    protected boolean sameNode(ASTNode other) {
+        return super.sameNode(other) && Objects.equals(name, ((PropertyName) other).name);
+    }
+
+    @Override
+    protected int nodeHashCode() {
+        return Objects.hashCode(name);
+    }
 }
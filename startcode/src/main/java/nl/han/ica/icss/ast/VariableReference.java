@@ -17,17 +17,12 @@ public class VariableReference extends Expression {
 	}
 
 	@Override
-	public boolean equals(Object o) {
-		if (this == o) return true;
-		if (o == null || getClass() != o.getClass()) return false;
-		if (!super.equals(o)) return false;
-		VariableReference that = (VariableReference) o;
-		return Objects.equals(name, that.name);
+	protected boolean sameNode(ASTNode other) {
+		return super.sameNode(other) && Objects.equals(name, ((VariableReference) other).name);
 	}
 
 	@Override
-	public int hashCode() {
-
-		return Objects.hash(name);
+	protected int nodeHashCode() {
+		return Objects.hashCode(name);
 	}
 }
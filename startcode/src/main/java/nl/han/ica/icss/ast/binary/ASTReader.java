@@ -0,0 +1,309 @@
+package nl.han.ica.icss.ast.binary;
+
+import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.datastructures.IHANStack;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads an AST written by {@link ASTWriter}, including error descriptions and source positions.
+ *
+ * Truncated or corrupt input gives an IOException: every length and count is checked against
+ * the bytes that are left before anything is allocated.
+ */
+public class ASTReader {
+
+    private final byte[] bytes;
+    private int position;
+    private String[] strings;
+
+    private ASTReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public static AST read(InputStream in) throws IOException {
+        return read(in.readAllBytes());
+    }
+
+    public static AST read(byte[] bytes) throws IOException {
+        try {
+            return new ASTReader(bytes).readAST();
+        } catch (ClassCastException e) {
+            // een geldige tag op een plek waar een ander soort node hoort
+            throw new IOException("Corrupt binary AST", e);
+        }
+    }
+
+    private AST readAST() throws IOException {
+        for (byte magic : Tags.MAGIC) {
+            if (position == bytes.length || readByte() != magic) throw new IOException("Not a binary AST");
+        }
+        int version = readByte();
+        if (version != Tags.VERSION) throw new IOException("Unsupported binary AST version " + version);
+
+        // elke string kost minstens één byte voor zijn lengte
+        strings = new String[readCount() + 1];
+        for (int i = 1; i < strings.length; i++) {
+            int length = readCount();
+            strings[i] = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+        }
+
+        ASTNode root = readTree();
+        if (!(root instanceof Stylesheet)) throw new IOException("Binary AST does not start with a stylesheet");
+        if (position != bytes.length) throw new IOException("Trailing bytes after binary AST");
+        return new AST((Stylesheet) root);
+    }
+
+    /*
+     * A node whose children are still being read. The layout lists the fields after the header
+     * in the order the writer wrote them: N for one node, L for a list that starts with a count.
+     */
+    private static final class Frame {
+        final ASTNode node;
+        final String layout;
+        int field;
+        // elementen die nog in de huidige lijst horen, -1 als het aantal nog niet gelezen is
+        int remaining = -1;
+
+        Frame(ASTNode node, String layout) {
+            this.node = node;
+            this.layout = layout;
+        }
+    }
+
+    /*
+     * Leest de boom in pre-order met een expliciete stack van open nodes in plaats van recursie:
+     * een diep geneste invoer kost zo heap in plaats van Java stack, en blijft een IOException
+     * geven als hij kapot is.
+     */
+    private ASTNode readTree() throws IOException {
+        ASTNode root = readNode();
+        IHANStack<Frame> open = new HANStack<>();
+        open(open, root);
+        while (!open.isEmpty()) {
+            Frame frame = open.peek();
+            if (frame.field == frame.layout.length()) {
+                open.pop();
+                continue;
+            }
+            boolean list = frame.layout.charAt(frame.field) == 'L';
+            if (list && frame.remaining < 0) {
+                frame.remaining = readCount();
+            }
+            if (list && frame.remaining == 0) {
+                frame.field++;
+                frame.remaining = -1;
+                continue;
+            }
+
+            ASTNode child = readNode();
+            attach(frame.node, frame.field, child);
+            if (list) {
+                frame.remaining--;
+            } else {
+                frame.field++;
+            }
+            open(open, child);
+        }
+        return root;
+    }
+
+    private static void open(IHANStack<Frame> open, ASTNode node) {
+        String layout = layout(node);
+        if (!layout.isEmpty()) open.push(new Frame(node, layout));
+    }
+
+    private static String layout(ASTNode node) {
+        if (node instanceof Stylesheet || node instanceof ElseClause) return "L";
+        if (node instanceof Stylerule) return "LL";
+        if (node instanceof IfClause) return "NLN";
+        if (node instanceof Declaration || node instanceof VariableAssignment || node instanceof Operation) return "NN";
+        return "";
+    }
+
+    // een verkeerd soort kind geeft een ClassCastException, die read als IOException meldt
+    private static void attach(ASTNode parent, int field, ASTNode child) throws IOException {
+        if (parent instanceof Stylesheet) {
+            ((Stylesheet) parent).body.add(child);
+        } else if (parent instanceof Stylerule) {
+            if (field == 0) {
+                if (child == null) throw new IOException("Corrupt binary AST: missing selector");
+                ((Stylerule) parent).selectors.add((Selector) child);
+            } else {
+                ((Stylerule) parent).body.add(child);
+            }
+        } else if (parent instanceof Declaration) {
+            if (field == 0) {
+                if (child == null) throw new IOException("Corrupt binary AST: missing property name");
+                ((Declaration) parent).property = (PropertyName) child;
+            } else {
+                ((Declaration) parent).expression = (Expression) child;
+            }
+        } else if (parent instanceof VariableAssignment) {
+            if (field == 0) {
+                ((VariableAssignment) parent).name = (VariableReference) child;
+            } else {
+                ((VariableAssignment) parent).expression = (Expression) child;
+            }
+        } else if (parent instanceof IfClause) {
+            if (field == 0) {
+                ((IfClause) parent).conditionalExpression = (Expression) child;
+            } else if (field == 1) {
+                ((IfClause) parent).body.add(child);
+            } else {
+                ((IfClause) parent).elseClause = (ElseClause) child;
+            }
+        } else if (parent instanceof ElseClause) {
+            ((ElseClause) parent).body.add(child);
+        } else if (field == 0) {
+            ((Operation) parent).lhs = (Expression) child;
+        } else {
+            ((Operation) parent).rhs = (Expression) child;
+        }
+    }
+
+    // leest één node met zijn eigen velden; de kinderen worden door readTree ingevuld
+    private ASTNode readNode() throws IOException {
+        int tag = readByte() & 0xff;
+        if (tag == NodeKinds.NULL) return null;
+
+        String error = (tag & Tags.HAS_ERROR) != 0 ? readString() : null;
+        int line = 0;
+        int column = 0;
+        if ((tag & Tags.HAS_POSITION) != 0) {
+            line = readVarint();
+            column = readVarint();
+        }
+
+        ASTNode node;
+        switch (tag & Tags.KIND_MASK) {
+            case NodeKinds.STYLESHEET:
+                node = new Stylesheet();
+                break;
+            case NodeKinds.STYLERULE:
+                node = new Stylerule();
+                break;
+            case NodeKinds.DECLARATION:
+                node = new Declaration();
+                break;
+            case NodeKinds.VARIABLE_ASSIGNMENT:
+                node = new VariableAssignment();
+                break;
+            case NodeKinds.IF_CLAUSE:
+                node = new IfClause();
+                break;
+            case NodeKinds.ELSE_CLAUSE:
+                node = new ElseClause();
+                break;
+            case NodeKinds.IMPORT:
+                node = new Import(readString());
+                break;
+            case NodeKinds.PROPERTY_NAME:
+                node = new PropertyName(readString());
+                break;
+            case NodeKinds.VARIABLE_REFERENCE:
+                node = new VariableReference(readString());
+                break;
+            case NodeKinds.ADD:
+                node = new AddOperation();
+                break;
+            case NodeKinds.SUBTRACT:
+                node = new SubtractOperation();
+                break;
+            case NodeKinds.MULTIPLY:
+                node = new MultiplyOperation();
+                break;
+            case NodeKinds.PIXEL:
+            case NodeKinds.PERCENTAGE:
+            case NodeKinds.SCALAR:
+            case NodeKinds.EM:
+            case NodeKinds.REM:
+                node = DimensionLiteral.of(NodeKinds.unitOf(tag & Tags.KIND_MASK), readSigned());
+                break;
+            case NodeKinds.COLOR:
+                node = new ColorLiteral(readVarint());
+                break;
+            case NodeKinds.FALSE:
+                node = new BoolLiteral(false);
+                break;
+            case NodeKinds.TRUE:
+                node = new BoolLiteral(true);
+                break;
+            case NodeKinds.TAG_SELECTOR:
+                node = new TagSelector(readString());
+                break;
+            case NodeKinds.CLASS_SELECTOR:
+                node = new ClassSelector(readString());
+                break;
+            case NodeKinds.ID_SELECTOR:
+                node = new IdSelector(readString());
+                break;
+            default:
+                throw new IOException("Unknown node tag " + tag);
+        }
+
+        if (error != null) node.setError(error);
+        node.setPosition(line, column);
+        return node;
+    }
+
+    private String readString() throws IOException {
+        int index = readVarint();
+        if (index < 0 || index >= strings.length) throw new IOException("String index out of range: " + index);
+        return strings[index];
+    }
+
+    /*
+     * Een lengte of aantal: nooit negatief en nooit meer dan er nog bytes zijn, omdat elk
+     * element minstens één byte kost. Zo maakt een kapotte lengte geen enorme array aan.
+     */
+    private int readCount() throws IOException {
+        int count = readVarint();
+        if (count < 0 || count > bytes.length - position) {
+            throw new IOException("Corrupt binary AST: count " + count + " at offset " + position);
+        }
+        return count;
+    }
+
+    private byte readByte() throws IOException {
+        if (position == bytes.length) throw new IOException("Truncated binary AST");
+        return bytes[position++];
+    }
+
+    private long readSigned() throws IOException {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift >= 64) throw new IOException("Varint too long at offset " + position);
+            b = readByte();
+            zigzag |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift >= 32) throw new IOException("Varint too long at offset " + position);
+            b = readByte();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
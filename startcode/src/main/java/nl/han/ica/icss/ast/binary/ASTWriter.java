@@ -0,0 +1,239 @@
+package nl.han.ica.icss.ast.binary;
+
+import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.datastructures.IHANStack;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.checker.Annotations;
+import nl.han.ica.icss.checker.SemanticError;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes an AST in a compact binary format that {@link ASTReader} reads back.
+ *
+ * Layout: magic "ICSB", a version byte, a table with every distinct string (selectors,
+ * properties, variable names, error descriptions), then the nodes in pre-order.
+ * Every node is a tag byte followed by its fields; numbers are zigzag varints of their fixed-point value, colors are
+ * plain varints of the packed RGBA value and strings are varint indexes into the table
+ * (0 for null).
+ */
+public class ASTWriter {
+
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+    // fouten uit een check, naast de fouten die in de nodes zelf staan; mag null zijn
+    private final Annotations annotations;
+
+    // markeringen op de stack van writeTree, zodat die geen null hoeft te bevatten
+    private static final ASTNode MISSING = new ASTNode();
+
+    private static final class Count extends ASTNode {
+        final int size;
+
+        Count(int size) {
+            this.size = size;
+        }
+    }
+
+    private ASTWriter(Annotations annotations) {
+        this.annotations = annotations;
+    }
+
+    public static byte[] toBytes(AST ast) {
+        return toBytes(ast, null);
+    }
+
+    /**
+     * @param annotations the result of checking the AST; its errors are stored with the nodes, may be null
+     */
+    public static byte[] toBytes(AST ast, Annotations annotations) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(ast, annotations, out);
+        } catch (IOException e) {
+            // een ByteArrayOutputStream gooit geen IOException
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static void write(AST ast, OutputStream out) throws IOException {
+        write(ast, null, out);
+    }
+
+    /**
+     * @param annotations the result of checking the AST; its errors are stored with the nodes, may be null
+     */
+    public static void write(AST ast, Annotations annotations, OutputStream out) throws IOException {
+        ASTWriter writer = new ASTWriter(annotations);
+        writer.writeTree(ast.root);
+
+        // de string tabel kan pas geschreven worden als alle nodes gezien zijn
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        header.write(Tags.MAGIC);
+        header.write(Tags.VERSION);
+        writeVarint(header, writer.strings.size());
+        for (String string : writer.strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(header, bytes.length);
+            header.write(bytes);
+        }
+        header.writeTo(out);
+        writer.nodes.writeTo(out);
+    }
+
+    /*
+     * Schrijft de boom in pre-order met een expliciete stack in plaats van recursie, zodat een
+     * lange keten als 1px + 1px + ... niet door de Java stack begrensd wordt. Kinderen en de
+     * aantallen van lijsten gaan in omgekeerde volgorde op de stack.
+     */
+    private void writeTree(ASTNode root) {
+        IHANStack<ASTNode> pending = new HANStack<>();
+        push(pending, root);
+        while (!pending.isEmpty()) {
+            ASTNode node = pending.pop();
+            if (node == MISSING) {
+                nodes.write(NodeKinds.NULL);
+            } else if (node instanceof Count) {
+                writeVarint(nodes, ((Count) node).size);
+            } else {
+                writeNode(node, pending);
+            }
+        }
+    }
+
+    // schrijft de tag en de velden van de node zelf, en zet de kinderen op de stack
+    private void writeNode(ASTNode node, IHANStack<ASTNode> pending) {
+        int tag = NodeKinds.of(node);
+        SemanticError error = node.hasError() ? node.getError()
+                : annotations != null ? annotations.getError(node) : null;
+        if (error != null) tag |= Tags.HAS_ERROR;
+        if (node.getLine() > 0) tag |= Tags.HAS_POSITION;
+        nodes.write(tag);
+        if (error != null) {
+            writeString(error.description);
+        }
+        if (node.getLine() > 0) {
+            writeVarint(nodes, node.getLine());
+            writeVarint(nodes, node.getColumn());
+        }
+
+        switch (tag & Tags.KIND_MASK) {
+            case NodeKinds.STYLESHEET:
+                pushAll(pending, ((Stylesheet) node).body);
+                break;
+            case NodeKinds.STYLERULE:
+                pushAll(pending, ((Stylerule) node).body);
+                pushAll(pending, ((Stylerule) node).selectors);
+                break;
+            case NodeKinds.DECLARATION:
+                push(pending, ((Declaration) node).expression);
+                push(pending, ((Declaration) node).property);
+                break;
+            case NodeKinds.VARIABLE_ASSIGNMENT:
+                push(pending, ((VariableAssignment) node).expression);
+                push(pending, ((VariableAssignment) node).name);
+                break;
+            case NodeKinds.IF_CLAUSE:
+                push(pending, ((IfClause) node).elseClause);
+                pushAll(pending, ((IfClause) node).body);
+                push(pending, ((IfClause) node).conditionalExpression);
+                break;
+            case NodeKinds.ELSE_CLAUSE:
+                pushAll(pending, ((ElseClause) node).body);
+                break;
+            case NodeKinds.IMPORT:
+                writeString(((Import) node).path);
+                break;
+            case NodeKinds.PROPERTY_NAME:
+                writeString(((PropertyName) node).name);
+                break;
+            case NodeKinds.VARIABLE_REFERENCE:
+                writeString(((VariableReference) node).name);
+                break;
+            case NodeKinds.ADD:
+            case NodeKinds.SUBTRACT:
+            case NodeKinds.MULTIPLY:
+                push(pending, ((Operation) node).rhs);
+                push(pending, ((Operation) node).lhs);
+                break;
+            case NodeKinds.PIXEL:
+            case NodeKinds.PERCENTAGE:
+            case NodeKinds.SCALAR:
+            case NodeKinds.EM:
+            case NodeKinds.REM:
+                writeSigned(((DimensionLiteral) node).fixed);
+                break;
+            case NodeKinds.COLOR:
+                writeVarint(nodes, ((ColorLiteral) node).value);
+                break;
+            case NodeKinds.TAG_SELECTOR:
+                writeString(((TagSelector) node).tag);
+                break;
+            case NodeKinds.CLASS_SELECTOR:
+                writeString(((ClassSelector) node).cls);
+                break;
+            case NodeKinds.ID_SELECTOR:
+                writeString(((IdSelector) node).id);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void push(IHANStack<ASTNode> pending, ASTNode node) {
+        pending.push(node == null ? MISSING : node);
+    }
+
+    // het aantal komt bovenop, zodat het voor de elementen geschreven wordt
+    private static void pushAll(IHANStack<ASTNode> pending, List<? extends ASTNode> list) {
+        for (int i = list.size() - 1; i >= 0; i--) {
+            push(pending, list.get(i));
+        }
+        pending.push(new Count(list.size()));
+    }
+
+    private void writeString(String string) {
+        if (string == null) {
+            writeVarint(nodes, 0);
+            return;
+        }
+        Integer index = stringIndexes.get(string);
+        if (index == null) {
+            strings.add(string);
+            index = strings.size();
+            stringIndexes.put(string, index);
+        }
+        writeVarint(nodes, index);
+    }
+
+    // zigzag, zodat kleine negatieve getallen ook kort blijven
+    private void writeSigned(long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7fL) != 0) {
+            nodes.write((int) (zigzag & 0x7f) | 0x80);
+            zigzag >>>= 7;
+        }
+        nodes.write((int) zigzag);
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
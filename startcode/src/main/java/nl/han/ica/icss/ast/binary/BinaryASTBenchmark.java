@@ -0,0 +1,70 @@
+package nl.han.ica.icss.ast.binary;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.compiler.Compiler;
+
+import java.io.IOException;
+
+/**
+ * Compares loading a stored binary AST with parsing the source again.
+ *
+ * Usage: BinaryASTBenchmark [rules] [seconds]
+ * Generates a stylesheet with the given number of rules (default 2 000), then for the given
+ * time each (default 3 s, after a warm-up of the same length) parses the source and reads the
+ * binary form, and prints both rates and how many times faster the binary read is.
+ */
+public class BinaryASTBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int rules = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        long nanos = (long) ((args.length > 1 ? Double.parseDouble(args[1]) : 3) * 1e9);
+
+        String source = stylesheet(rules);
+        Compiler compiler = new Compiler();
+        AST parsed = compiler.parse(source).sourceAST;
+        byte[] bytes = ASTWriter.toBytes(parsed);
+        if (!parsed.equals(ASTReader.read(bytes))) throw new IllegalStateException("Round trip changed the AST");
+
+        parse(compiler, source, nanos);
+        read(bytes, nanos);
+        double parses = parse(compiler, source, nanos) / (nanos / 1e9);
+        double reads = read(bytes, nanos) / (nanos / 1e9);
+
+        System.out.printf("%d rules, %d source chars, %d binary bytes%n", rules, source.length(), bytes.length);
+        System.out.printf("parse: %.1f/s%nread:  %.1f/s%n%.1fx faster than re-parsing%n", parses, reads, reads / parses);
+    }
+
+    private static long parse(Compiler compiler, String source, long nanos) {
+        long count = 0;
+        int sink = 0;
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            sink += compiler.parse(source).sourceAST.root.body.size();
+            count++;
+        }
+        if (sink == 42) System.out.println();
+        return count;
+    }
+
+    private static long read(byte[] bytes, long nanos) throws IOException {
+        long count = 0;
+        int sink = 0;
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            sink += ASTReader.read(bytes).root.body.size();
+            count++;
+        }
+        if (sink == 42) System.out.println();
+        return count;
+    }
+
+    static String stylesheet(int rules) {
+        StringBuilder input = new StringBuilder("Base := 10px;\nUse := TRUE;\n");
+        for (int i = 0; i < rules; i++) {
+            input.append(i % 2 == 0 ? ".c" : "#id").append(i).append(" { width: Base * 2 + ").append(i % 100)
+                    .append("px; margin: 1.5em; if[Use] { color: #").append(String.format("%06x", i))
+                    .append("; } else { color: #000000; } }\n");
+        }
+        return input.toString();
+    }
+}
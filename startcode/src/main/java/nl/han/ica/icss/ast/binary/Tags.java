@@ -0,0 +1,18 @@
+package nl.han.ica.icss.ast.binary;
+
+/*
+ * Header and flag bits of the binary AST format. The low six bits of a tag byte hold the
+ * node kind from NodeKinds, the high bits say whether an error description and a source
+ * position follow.
+ */
+final class Tags {
+
+    static final byte[] MAGIC = { 'I', 'C', 'S', 'B' };
+    static final int VERSION = 3;
+
+    static final int HAS_ERROR = 0x80;
+    static final int HAS_POSITION = 0x40;
+    static final int KIND_MASK = 0x3f;
+
+    private Tags() { }
+}
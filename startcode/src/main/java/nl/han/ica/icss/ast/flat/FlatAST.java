@@ -0,0 +1,316 @@
+package nl.han.ica.icss.ast.flat;
+
+import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.datastructures.IHANStack;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static nl.han.ica.icss.ast.NodeKinds.*;
+
+/**
+ * A read-only AST stored as parallel primitive arrays instead of one object per node.
+ *
+ * A node is an index. Per node there is a kind, the index of its first child and of its next
+ * sibling, a long value (fixed-point numbers and packed colors), an index into a table
+ * of distinct strings (names, selectors) and the source position. Error descriptions are rare,
+ * so they are kept in a separate map. Node 0 is always the stylesheet.
+ *
+ * Node kinds are the {@link NodeKinds} of the binary format.
+ *
+ * {@link #copy(int)} builds a node as a detached {@link ASTNode} subtree, which lets the
+ * checker and evaluator work on one top-level statement at a time. It is a copy and not a
+ * view: those phases read and replace the public fields of the node classes, which an
+ * adapter over these arrays cannot offer.
+ */
+public final class FlatAST {
+
+    public static final int NONE = -1;
+
+    private final int size;
+    private final byte[] kinds;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final long[] values;
+    private final int[] strings;
+    private final int[] lines;
+    private final int[] columns;
+    private final String[] stringTable;
+    private final Map<Integer, String> errors;
+
+    private FlatAST(Builder builder) {
+        size = builder.size;
+        kinds = Arrays.copyOf(builder.kinds, size);
+        firstChild = Arrays.copyOf(builder.firstChild, size);
+        nextSibling = Arrays.copyOf(builder.nextSibling, size);
+        values = Arrays.copyOf(builder.values, size);
+        strings = Arrays.copyOf(builder.strings, size);
+        lines = Arrays.copyOf(builder.lines, size);
+        columns = Arrays.copyOf(builder.columns, size);
+        stringTable = builder.stringTable.toArray(new String[0]);
+        errors = Map.copyOf(builder.errors);
+    }
+
+    public static FlatAST from(AST ast) {
+        Builder builder = new Builder();
+        if (ast != null && ast.root != null) {
+            builder.setPosition(0, ast.root.getLine(), ast.root.getColumn());
+            for (ASTNode statement : ast.root.body) {
+                builder.append(statement);
+            }
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int root() {
+        return 0;
+    }
+
+    public byte kind(int node) {
+        return kinds[node];
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    public long value(int node) {
+        return values[node];
+    }
+
+    /**
+     * @return the name, selector or import path of the node, null when it has none
+     */
+    public String string(int node) {
+        int index = strings[node];
+        return index == NONE ? null : stringTable[index];
+    }
+
+    public int line(int node) {
+        return lines[node];
+    }
+
+    public int column(int node) {
+        return columns[node];
+    }
+
+    public String error(int node) {
+        return errors.get(node);
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    /**
+     * Builds the node and its descendants as ordinary AST nodes. Changing the copy does not
+     * change this flat AST.
+     */
+    public ASTNode copy(int node) {
+        ASTNode result = detached(node);
+        // een expliciete stack in plaats van recursie, zodat diepe bomen de Java stack niet opmaken;
+        // na een node komt eerst zijn eerste kind aan de beurt en daarna zijn volgende broer
+        IHANStack<Integer> pending = new HANStack<>();
+        IHANStack<ASTNode> parents = new HANStack<>();
+        if (firstChild[node] != NONE) {
+            pending.push(firstChild[node]);
+            parents.push(result);
+        }
+        while (!pending.isEmpty()) {
+            int child = pending.pop();
+            ASTNode parent = parents.pop();
+            ASTNode copy = detached(child);
+            parent.addChild(copy);
+            if (nextSibling[child] != NONE) {
+                pending.push(nextSibling[child]);
+                parents.push(parent);
+            }
+            if (firstChild[child] != NONE) {
+                pending.push(firstChild[child]);
+                parents.push(copy);
+            }
+        }
+        return result;
+    }
+
+    public AST toAST() {
+        return new AST((Stylesheet) copy(0));
+    }
+
+    // de node zelf, zonder kinderen
+    private ASTNode detached(int node) {
+        ASTNode result = create(node);
+        String error = errors.get(node);
+        if (error != null) result.setError(error);
+        result.setPosition(lines[node], columns[node]);
+        return result;
+    }
+
+    private ASTNode create(int node) {
+        switch (kinds[node]) {
+            case STYLESHEET: return new Stylesheet();
+            case STYLERULE: return new Stylerule();
+            case DECLARATION: return new Declaration();
+            case VARIABLE_ASSIGNMENT: return new VariableAssignment();
+            case IF_CLAUSE: return new IfClause();
+            case ELSE_CLAUSE: return new ElseClause();
+            case IMPORT: return new Import(string(node));
+            case PROPERTY_NAME: return new PropertyName(string(node));
+            case VARIABLE_REFERENCE: return new VariableReference(string(node));
+            case ADD: return new AddOperation();
+            case SUBTRACT: return new SubtractOperation();
+            case MULTIPLY: return new MultiplyOperation();
+            case PIXEL:
+            case PERCENTAGE:
+            case SCALAR:
+            case EM:
+            case REM: return DimensionLiteral.of(NodeKinds.unitOf(kinds[node]), values[node]);
+            case COLOR: return new ColorLiteral((int) values[node]);
+            case FALSE: return new BoolLiteral(false);
+            case TRUE: return new BoolLiteral(true);
+            case TAG_SELECTOR: return new TagSelector(string(node));
+            case CLASS_SELECTOR: return new ClassSelector(string(node));
+            case ID_SELECTOR: return new IdSelector(string(node));
+            default: throw new IllegalStateException("Unknown node kind " + kinds[node]);
+        }
+    }
+
+    /**
+     * Builds a flat AST one top-level statement at a time, so the object form of a statement
+     * can be dropped as soon as it is appended.
+     */
+    public static final class Builder {
+
+        private int size;
+        private byte[] kinds = new byte[64];
+        private int[] firstChild = new int[64];
+        private int[] nextSibling = new int[64];
+        // alleen nodig tijdens het bouwen, om in O(1) een kind achteraan te hangen
+        private int[] lastChild = new int[64];
+        private long[] values = new long[64];
+        private int[] strings = new int[64];
+        private int[] lines = new int[64];
+        private int[] columns = new int[64];
+        private final List<String> stringTable = new ArrayList<>();
+        private final Map<String, Integer> stringIndexes = new HashMap<>();
+        private final Map<Integer, String> errors = new HashMap<>();
+
+        public Builder() {
+            add(STYLESHEET, NONE, 0, null);
+        }
+
+        /**
+         * Appends a statement and its descendants to the stylesheet.
+         */
+        public Builder append(ASTNode statement) {
+            // in pre-order met een expliciete stack, de kinderen in omgekeerde volgorde erop
+            IHANStack<ASTNode> pending = new HANStack<>();
+            IHANStack<Integer> parents = new HANStack<>();
+            pending.push(statement);
+            parents.push(0);
+            while (!pending.isEmpty()) {
+                ASTNode node = pending.pop();
+                int index = add(NodeKinds.of(node), parents.pop(), valueOf(node), stringOf(node));
+                setPosition(index, node.getLine(), node.getColumn());
+                if (node.hasError()) {
+                    errors.put(index, node.getError().description);
+                }
+                List<ASTNode> children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    if (children.get(i) != null) {
+                        pending.push(children.get(i));
+                        parents.push(index);
+                    }
+                }
+            }
+            return this;
+        }
+
+        public FlatAST build() {
+            return new FlatAST(this);
+        }
+
+        private int add(byte kind, int parent, long value, String string) {
+            if (size == kinds.length) grow();
+            int index = size++;
+            kinds[index] = kind;
+            firstChild[index] = NONE;
+            nextSibling[index] = NONE;
+            lastChild[index] = NONE;
+            values[index] = value;
+            strings[index] = intern(string);
+            if (parent != NONE) {
+                if (lastChild[parent] == NONE) {
+                    firstChild[parent] = index;
+                } else {
+                    nextSibling[lastChild[parent]] = index;
+                }
+                lastChild[parent] = index;
+            }
+            return index;
+        }
+
+        private void setPosition(int index, int line, int column) {
+            lines[index] = line;
+            columns[index] = column;
+        }
+
+        private int intern(String string) {
+            if (string == null) return NONE;
+            Integer index = stringIndexes.get(string);
+            if (index == null) {
+                index = stringTable.size();
+                stringTable.add(string);
+                stringIndexes.put(string, index);
+            }
+            return index;
+        }
+
+        private void grow() {
+            int capacity = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            lastChild = Arrays.copyOf(lastChild, capacity);
+            values = Arrays.copyOf(values, capacity);
+            strings = Arrays.copyOf(strings, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+        }
+
+        private static long valueOf(ASTNode node) {
+            if (node instanceof DimensionLiteral) return ((DimensionLiteral) node).fixed;
+            if (node instanceof ColorLiteral) return ((ColorLiteral) node).value;
+            return 0;
+        }
+
+        private static String stringOf(ASTNode node) {
+            if (node instanceof Import) return ((Import) node).path;
+            if (node instanceof PropertyName) return ((PropertyName) node).name;
+            if (node instanceof VariableReference) return ((VariableReference) node).name;
+            if (node instanceof TagSelector) return ((TagSelector) node).tag;
+            if (node instanceof ClassSelector) return ((ClassSelector) node).cls;
+            if (node instanceof IdSelector) return ((IdSelector) node).id;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package nl.han.ica.icss.ast.flat;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+
+/**
+ * Measures the heap retained by the object AST and by the flat AST of the same stylesheet.
+ *
+ * Usage: Footprint [rules]
+ * Generates a stylesheet with the given number of style rules (default 200 000), parses it,
+ * and reports the heap in use after a full GC with only the object AST and with only the
+ * flat AST reachable. Run with a fixed heap (e.g. -Xms2g -Xmx2g) for stable numbers.
+ */
+public class Footprint {
+
+    public static void main(String[] args) {
+        int rules = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        String input = stylesheet(rules);
+
+        long baseline = usedHeap();
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input);
+        AST ast = pipeline.getAST();
+        pipeline = null;
+        long objectBytes = usedHeap() - baseline;
+
+        FlatAST flat = FlatAST.from(ast);
+        ast = null;
+        long flatBytes = usedHeap() - baseline;
+
+        System.out.printf("%d rules, %d nodes%n", rules, flat.size());
+        System.out.printf("object AST: %,d bytes (%.1f per node)%n", objectBytes, (double) objectBytes / flat.size());
+        System.out.printf("flat AST:   %,d bytes (%.1f per node)%n", flatBytes, (double) flatBytes / flat.size());
+        System.out.printf("reduction:  %.1fx%n", (double) objectBytes / flatBytes);
+    }
+
+    static String stylesheet(int rules) {
+        StringBuilder input = new StringBuilder("Width := 10px;\nUse := TRUE;\n");
+        for (int i = 0; i < rules; i++) {
+            input.append(".rule").append(i % 1000).append(", #id").append(i % 100).append(" {\n")
+                    .append("  width: Width + ").append(i % 50).append("px;\n")
+                    .append("  color: #").append(String.format("%06x", i % 4096)).append(";\n")
+                    .append("  if[Use] { height: 2 * Width; }\n")
+                    .append("}\n");
+        }
+        return input.toString();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -1,7 +1,8 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTNode;
 import nl.han.ica.icss.ast.Literal;
-import java.util.Objects;
+import nl.han.ica.icss.ast.types.ExpressionType;
 
 public class BoolLiteral extends Literal {
     public boolean value;
@@ -12,6 +13,11 @@ public class BoolLiteral extends Literal {
     public BoolLiteral(String text) {
         this.value = text.equals("TRUE");
     }
+    @Override
+    public ExpressionType getType() {
+        return ExpressionType.BOOL;
+    }
+
     @Override
     public String getNodeLabel() {
         String textValue = value ? "TRUE" : "FALSE";
@@ -19,16 +25,12 @@ public class BoolLiteral extends Literal {
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        BoolLiteral that = (BoolLiteral) o;
-        return value == that.value;
+    protected boolean sameNode(ASTNode other) {
+        return super.sameNode(other) && value == ((BoolLiteral) other).value;
     }
 
     @Override
-    public int hashCode() {
-        return Objects.hash(value);
+    protected int nodeHashCode() {
+        return Boolean.hashCode(value);
     }
 }
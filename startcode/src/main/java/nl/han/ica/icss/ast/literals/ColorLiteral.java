@@ -1,31 +1,138 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTNode;
 import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.types.ExpressionType;
 
-import java.util.Objects;
-
+/**
+ * A colour, stored as one packed 0xRRGGBBAA int.
+ *
+ * The static helpers work on packed values only, so colour arithmetic needs no string handling.
+ */
 public class ColorLiteral extends Literal {
-    public String value;
+    public static final int OPAQUE = 0xff;
+    public static final int WHITE = 0xffffffff;
+    public static final int BLACK = 0x000000ff;
+
+    public int value;
 
-    public ColorLiteral(String value) {
+    public ColorLiteral(int value) {
         this.value = value;
     }
-    @Override
-    public String getNodeLabel() {
-        return "Color literal (" + value + ")";
+    /**
+     * @param text #rrggbb or #rrggbbaa, case-insensitive
+     */
+    public ColorLiteral(String text) {
+        this.value = parse(text);
     }
 
+    public static int parse(String text) {
+        int digits = text.length() - 1;
+        if (!text.startsWith("#") || (digits != 6 && digits != 8)) {
+            throw new NumberFormatException("Not a colour: " + text);
+        }
+        int rgb = Integer.parseUnsignedInt(text.substring(1), 16);
+        return digits == 6 ? rgb << 8 | OPAQUE : rgb;
+    }
+
+    public int red() { return value >>> 24; }
+    public int green() { return value >>> 16 & 0xff; }
+    public int blue() { return value >>> 8 & 0xff; }
+    public int alpha() { return value & 0xff; }
+
+    /**
+     * Canonical CSS form: lowercase #rrggbb, or #rrggbbaa when the colour is not opaque.
+     */
+    public String toHex() {
+        return format(value);
+    }
+
+    public static String format(int rgba) {
+        char[] hex = new char[(rgba & 0xff) == OPAQUE ? 7 : 9];
+        hex[0] = '#';
+        for (int i = 1; i < hex.length; i++) {
+            hex[i] = Character.forDigit(rgba >>> (32 - 4 * i) & 0xf, 16);
+        }
+        return new String(hex);
+    }
+
+    // kanaalgewijs optellen en aftrekken, verzadigd op 0 en 255; alpha komt van de linker kleur
+    public static int add(int left, int right) {
+        return channels(left, right, 1);
+    }
+
+    public static int subtract(int left, int right) {
+        return channels(left, right, -1);
+    }
+
+    private static int channels(int left, int right, int sign) {
+        int result = left & 0xff;
+        for (int shift = 8; shift < 32; shift += 8) {
+            int channel = (left >>> shift & 0xff) + sign * (right >>> shift & 0xff);
+            result |= clamp(channel) << shift;
+        }
+        return result;
+    }
+
+    /**
+     * Multiplies the colour channels by numerator / denominator; alpha is kept.
+     * @param denominator positive
+     */
+    public static int scale(int rgba, long numerator, long denominator) {
+        // elke factor boven 256 verzadigt al, dus begrenzen voorkomt overloop zonder de uitkomst te veranderen
+        long factor = Math.max(-256 * denominator, Math.min(256 * denominator, numerator));
+        int result = rgba & 0xff;
+        for (int shift = 8; shift < 32; shift += 8) {
+            long channel = (rgba >>> shift & 0xff) * factor / denominator;
+            result |= (int) Math.max(0, Math.min(255, channel)) << shift;
+        }
+        return result;
+    }
+
+    /**
+     * Blends two colours, alpha included.
+     * @param weight share of the second colour in percent, clamped to 0..100
+     */
+    public static int mix(int first, int second, int weight) {
+        int w = Math.max(0, Math.min(100, weight));
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int channel = ((first >>> shift & 0xff) * (100 - w) + (second >>> shift & 0xff) * w + 50) / 100;
+            result |= channel << shift;
+        }
+        return result;
+    }
+
+    // mengen met wit of zwart van dezelfde alpha, zodat de doorzichtigheid blijft
+    public static int lighten(int rgba, int percentage) {
+        return mix(rgba, WHITE & ~0xff | rgba & 0xff, percentage);
+    }
+
+    public static int darken(int rgba, int percentage) {
+        return mix(rgba, BLACK & ~0xff | rgba & 0xff, percentage);
+    }
+
+    private static int clamp(int channel) {
+        return channel < 0 ? 0 : Math.min(channel, 255);
+    }
+
+    @Override
+    public ExpressionType getType() {
+        return ExpressionType.COLOR;
+    }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        ColorLiteral that = (ColorLiteral) o;
-        return Objects.equals(value, that.value);
+    public String getNodeLabel() {
+        return "Color literal (" + toHex() + ")";
     }
+
     @Override
-    public int hashCode() {
+    protected boolean sameNode(ASTNode other) {
+        return super.sameNode(other) && value == ((ColorLiteral) other).value;
+    }
 
-        return Objects.hash(value);
+    @Override
+    protected int nodeHashCode() {
+        return Integer.hashCode(value);
     }
 }
@@ -0,0 +1,115 @@
+package nl.han.ica.icss.ast.literals;
+
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.ast.types.Unit;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * A number with a unit, stored as a fixed-point long with three decimals.
+ *
+ * Pixels, percentages and scalars keep their own subclasses, so existing code that builds or
+ * matches on them still works; {@link #of(Unit, long)} picks the subclass for a unit.
+ * Arithmetic on these values lives in {@link nl.han.ica.icss.ast.types.Arithmetic}.
+ */
+public class DimensionLiteral extends Literal {
+    // aantal vaste-komma stappen per hele eenheid
+    public static final int SCALE = 1000;
+
+    public final Unit unit;
+    // de waarde maal SCALE
+    public long fixed;
+
+    public DimensionLiteral(Unit unit, long fixed) {
+        this.unit = unit;
+        this.fixed = fixed;
+    }
+
+    /**
+     * @param fixed the value times {@link #SCALE}
+     */
+    public static DimensionLiteral of(Unit unit, long fixed) {
+        switch (unit) {
+            case PIXEL: return withFixed(new PixelLiteral(0), fixed);
+            case PERCENTAGE: return withFixed(new PercentageLiteral(0), fixed);
+            case SCALAR: return withFixed(new ScalarLiteral(0), fixed);
+            default: return new DimensionLiteral(unit, fixed);
+        }
+    }
+
+    private static DimensionLiteral withFixed(DimensionLiteral literal, long fixed) {
+        literal.fixed = fixed;
+        return literal;
+    }
+
+    /**
+     * Parses a number with an optional unit suffix, e.g. "12px", "1.5em" or "3".
+     * Digits after the third decimal are rounded.
+     */
+    public static DimensionLiteral parse(String text) {
+        Unit unit = Unit.ofSuffix(text);
+        return of(unit, parseFixed(text.substring(0, text.length() - unit.suffix.length())));
+    }
+
+    static long parseFixed(String number) {
+        try {
+            return new BigDecimal(number).movePointRight(3).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Number out of range: " + number);
+        }
+    }
+
+    /**
+     * @return the whole part of the value, rounded towards zero
+     */
+    public int intValue() {
+        return (int) (fixed / SCALE);
+    }
+
+    /**
+     * @return the value in CSS notation, e.g. "12px" or "1.5em"
+     */
+    public String toCss() {
+        return format(fixed, unit);
+    }
+
+    public static String format(long fixed, Unit unit) {
+        StringBuilder text = new StringBuilder();
+        if (fixed < 0 && fixed > -SCALE) text.append('-');
+        text.append(fixed / SCALE);
+        long fraction = Math.abs(fixed % SCALE);
+        if (fraction != 0) {
+            // voorloopnullen houden, naloopnullen weglaten
+            String digits = Long.toString(SCALE + fraction).substring(1);
+            int end = digits.length();
+            while (digits.charAt(end - 1) == '0') end--;
+            text.append('.').append(digits, 0, end);
+        }
+        return text.append(unit.suffix).toString();
+    }
+
+    @Override
+    public ExpressionType getType() {
+        return unit.type;
+    }
+
+    @Override
+    public String getNodeLabel() {
+        return "Dimension literal (" + toCss() + ")";
+    }
+
+    // een PixelLiteral en een DimensionLiteral in pixels met dezelfde waarde zijn gelijk
+    @Override
+    protected boolean sameNode(ASTNode other) {
+        return other instanceof DimensionLiteral
+                && unit == ((DimensionLiteral) other).unit && fixed == ((DimensionLiteral) other).fixed;
+    }
+
+    @Override
+    protected int nodeHashCode() {
+        return 31 * unit.ordinal() + Long.hashCode(fixed);
+    }
+}
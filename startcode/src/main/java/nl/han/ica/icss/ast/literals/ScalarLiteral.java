@@ -1,34 +1,18 @@
 package nl.han.ica.icss.ast.literals;
 
-import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.types.Unit;
 
-import java.util.Objects;
 
-public class ScalarLiteral extends Literal {
-    public int value;
+public class ScalarLiteral extends DimensionLiteral {
 
     public ScalarLiteral(int value) {
-        this.value = value;
+        super(Unit.SCALAR, value * (long) SCALE);
     }
     public ScalarLiteral(String text) {
-        this.value = Integer.parseInt(text);
+        super(Unit.SCALAR, parseFixed(text));
     }
     @Override
     public String getNodeLabel() {
-        return "Scalar literal (" + value + ")";
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        ScalarLiteral that = (ScalarLiteral) o;
-        return value == that.value;
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(value);
+        return "Scalar literal (" + format(fixed, Unit.SCALAR) + ")";
     }
 }
@@ -1,5 +1,6 @@
 package nl.han.ica.icss.ast.selectors;
 
+import nl.han.ica.icss.ast.ASTNode;
 import nl.han.ica.icss.ast.Selector;
 
 import java.util.Objects;
@@ -21,15 +22,12 @@ public class ClassSelector extends Selector {
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        ClassSelector that = (ClassSelector) o;
-        return Objects.equals(cls, that.cls);
+    protected boolean sameNode(ASTNode other) {
+        return super.sameNode(other) && Objects.equals(cls, ((ClassSelector) other).cls);
     }
 
     @Override
-    public int hashCode() {
-        return Objects.hash(cls);
+    protected int nodeHashCode() {
+        return Objects.hashCode(cls);
     }
 }
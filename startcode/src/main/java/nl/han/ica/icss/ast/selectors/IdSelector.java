@@ -1,5 +1,6 @@
 package nl.han.ica.icss.ast.selectors;
 
+import nl.han.ica.icss.ast.ASTNode;
 import nl.han.ica.icss.ast.Selector;
 
 import java.util.Objects;
@@ -19,16 +20,12 @@ public class IdSelector extends Selector {
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        IdSelector that = (IdSelector) o;
-        return Objects.equals(id, that.id);
+    protected boolean sameNode(ASTNode other) {
+        return super.sameNode(other) && Objects.equals(id, ((IdSelector) other).id);
     }
 
     @Override
-    public int hashCode() {
-        return Objects.hash(id);
+    protected int nodeHashCode() {
+        return Objects.hashCode(id);
     }
 }
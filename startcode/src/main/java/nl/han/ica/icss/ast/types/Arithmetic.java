@@ -0,0 +1,166 @@
+package nl.han.ica.icss.ast.types;
+
+import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.Operation;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.DimensionLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+
+import java.math.BigInteger;
+import java.util.function.BinaryOperator;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * The arithmetic rules of ICSS as one table, indexed by operator and the types of both operands.
+ *
+ * The checker asks the table for the result type, the evaluator for the kernel that computes the
+ * value, so both always agree on what is allowed. A new unit only needs a {@link Unit} constant;
+ * the dimension rules below are generated for every unit.
+ */
+public final class Arithmetic {
+
+    public enum Operator {
+        ADD, SUBTRACT, MULTIPLY;
+
+        public static Operator of(Operation operation) {
+            if (operation instanceof AddOperation) return ADD;
+            if (operation instanceof SubtractOperation) return SUBTRACT;
+            if (operation instanceof MultiplyOperation) return MULTIPLY;
+            return null;
+        }
+    }
+
+    private static final class Rule {
+        final ExpressionType result;
+        final BinaryOperator<Literal> kernel;
+
+        Rule(ExpressionType result, BinaryOperator<Literal> kernel) {
+            this.result = result;
+            this.kernel = kernel;
+        }
+    }
+
+    private static final int TYPES = ExpressionType.values().length;
+    // [operator][linker type][rechter type], null als de combinatie niet mag
+    private static final Rule[][][] RULES = new Rule[Operator.values().length][TYPES][TYPES];
+    // de onderste 64 bits van een product, zonder teken
+    private static final BigInteger UNSIGNED = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+
+    static {
+        for (Unit unit : Unit.values()) {
+            // optellen en aftrekken alleen binnen dezelfde unit
+            dimension(Operator.ADD, unit, unit, unit, Arithmetic::add);
+            dimension(Operator.SUBTRACT, unit, unit, unit, Arithmetic::subtract);
+            // vermenigvuldigen met een scalar houdt de unit, in beide volgordes
+            dimension(Operator.MULTIPLY, unit, Unit.SCALAR, unit, Arithmetic::multiply);
+            dimension(Operator.MULTIPLY, Unit.SCALAR, unit, unit, Arithmetic::multiply);
+        }
+
+        ExpressionType color = ExpressionType.COLOR;
+        ExpressionType percentage = ExpressionType.PERCENTAGE;
+        ExpressionType scalar = ExpressionType.SCALAR;
+        colorRule(Operator.ADD, color, color, (a, b) -> color(ColorLiteral.add(rgba(a), rgba(b))));
+        colorRule(Operator.SUBTRACT, color, color, (a, b) -> color(ColorLiteral.subtract(rgba(a), rgba(b))));
+        // kleur + percentage maakt lichter, kleur - percentage donkerder
+        colorRule(Operator.ADD, color, percentage, (a, b) -> color(ColorLiteral.lighten(rgba(a), whole(b))));
+        colorRule(Operator.SUBTRACT, color, percentage, (a, b) -> color(ColorLiteral.darken(rgba(a), whole(b))));
+        // een kleur schalen met een scalar of percentage, in beide volgordes
+        colorRule(Operator.MULTIPLY, color, scalar, (a, b) -> scale(a, b, 1));
+        colorRule(Operator.MULTIPLY, scalar, color, (a, b) -> scale(b, a, 1));
+        colorRule(Operator.MULTIPLY, color, percentage, (a, b) -> scale(a, b, 100));
+        colorRule(Operator.MULTIPLY, percentage, color, (a, b) -> scale(b, a, 100));
+    }
+
+    private Arithmetic() { }
+
+    /**
+     * @return the type of the result, UNDEFINED when the operator does not accept these types
+     */
+    public static ExpressionType resultType(Operator operator, ExpressionType left, ExpressionType right) {
+        Rule rule = lookup(operator, left, right);
+        return rule == null ? ExpressionType.UNDEFINED : rule.result;
+    }
+
+    /**
+     * @return the computed value, null when an operand is missing or the types do not combine
+     */
+    public static Literal apply(Operator operator, Literal left, Literal right) {
+        if (left == null || right == null) return null;
+        Rule rule = lookup(operator, left.getType(), right.getType());
+        return rule == null ? null : rule.kernel.apply(left, right);
+    }
+
+    private static Rule lookup(Operator operator, ExpressionType left, ExpressionType right) {
+        if (operator == null) return null;
+        return RULES[operator.ordinal()][left.ordinal()][right.ordinal()];
+    }
+
+    private static void colorRule(Operator operator, ExpressionType left, ExpressionType right, BinaryOperator<Literal> kernel) {
+        RULES[operator.ordinal()][left.ordinal()][right.ordinal()] = new Rule(ExpressionType.COLOR, kernel);
+    }
+
+    private static void dimension(Operator operator, Unit left, Unit right, Unit result, LongBinaryOperator kernel) {
+        RULES[operator.ordinal()][left.type.ordinal()][right.type.ordinal()] = new Rule(result.type,
+                (a, b) -> DimensionLiteral.of(result, kernel.applyAsLong(fixed(a), fixed(b))));
+    }
+
+    // bij overloop verzadigen op Long.MIN_VALUE of Long.MAX_VALUE in plaats van om te slaan
+    static long add(long left, long right) {
+        long sum = left + right;
+        if (((left ^ sum) & (right ^ sum)) < 0) return left < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        return sum;
+    }
+
+    static long subtract(long left, long right) {
+        long difference = left - right;
+        if (((left ^ right) & (left ^ difference)) < 0) return left < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        return difference;
+    }
+
+    /*
+     * Beide operanden hebben SCALE als factor, dus één keer terugdelen; een half wordt van nul
+     * af afgerond, net als bij het parsen. Het product wordt in 128 bits berekend, zodat alleen
+     * een uitkomst buiten long verzadigt.
+     */
+    static long multiply(long left, long right) {
+        long high = Math.multiplyHigh(left, right);
+        long low = left * right;
+        // past het product in een long, dan is high alleen de tekenuitbreiding van low
+        if (high == low >> 63) {
+            long quotient = low / DimensionLiteral.SCALE;
+            long remainder = low % DimensionLiteral.SCALE;
+            if (Math.abs(remainder) * 2 >= DimensionLiteral.SCALE) quotient += Long.signum(low);
+            return quotient;
+        }
+        BigInteger product = BigInteger.valueOf(high).shiftLeft(64).add(BigInteger.valueOf(low).and(UNSIGNED));
+        BigInteger[] division = product.divideAndRemainder(BigInteger.valueOf(DimensionLiteral.SCALE));
+        BigInteger quotient = division[0];
+        if (division[1].abs().shiftLeft(1).compareTo(BigInteger.valueOf(DimensionLiteral.SCALE)) >= 0) {
+            quotient = quotient.add(BigInteger.valueOf(product.signum()));
+        }
+        if (quotient.bitLength() >= 64) return quotient.signum() < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        return quotient.longValue();
+    }
+
+    private static long fixed(Literal literal) {
+        return ((DimensionLiteral) literal).fixed;
+    }
+
+    private static int whole(Literal literal) {
+        return ((DimensionLiteral) literal).intValue();
+    }
+
+    private static int rgba(Literal literal) {
+        return ((ColorLiteral) literal).value;
+    }
+
+    private static Literal color(int rgba) {
+        return new ColorLiteral(rgba);
+    }
+
+    private static Literal scale(Literal color, Literal factor, int denominator) {
+        return color(ColorLiteral.scale(rgba(color), fixed(factor), (long) denominator * DimensionLiteral.SCALE));
+    }
+}
@@ -6,5 +6,7 @@ public enum ExpressionType {
     COLOR,
     SCALAR,
     UNDEFINED,
-    BOOL
+    BOOL,
+    EM,
+    REM
 }
@@ -0,0 +1,55 @@
+package nl.han.ica.icss.ast.types;
+
+import nl.han.ica.icss.ast.ASTNode;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Side table with the types the checker inferred, keyed by node identity.
+ *
+ * Every checked expression has an entry, and so has every declaration (the type of its value),
+ * so tools can ask for types without checking again. The evaluator and generator do not use it:
+ * they dispatch on the type of the literal they hold, which stays right after if-inlining.
+ * The table only describes the AST it was built for; after the checker is done it is only read.
+ */
+public class TypeTable {
+
+    private final Map<ASTNode, ExpressionType> types = new IdentityHashMap<>();
+    // tabel waarin gezocht wordt als een node hier niet in staat, mag null zijn
+    private final TypeTable parent;
+
+    public TypeTable() {
+        this(null);
+    }
+
+    /**
+     * Creates a table that extends another: lookups fall back to the parent, new entries
+     * only go into this table.
+     */
+    public TypeTable(TypeTable parent) {
+        this.parent = parent;
+    }
+
+    public void put(ASTNode node, ExpressionType type) {
+        types.put(node, type);
+    }
+
+    /**
+     * @return the inferred type, or null when the node was not checked
+     */
+    public ExpressionType get(ASTNode node) {
+        ExpressionType type = types.get(node);
+        if (type == null && parent != null) {
+            return parent.get(node);
+        }
+        return type;
+    }
+
+    /**
+     * @return the number of entries in this table, without the parent
+     */
+    public int size() {
+        return types.size();
+    }
+}
@@ -0,0 +1,49 @@
+package nl.han.ica.icss.ast.types;
+
+/**
+ * The unit of a {@link nl.han.ica.icss.ast.literals.DimensionLiteral}, with its CSS suffix
+ * and the expression type the checker uses for it.
+ */
+public enum Unit {
+    PIXEL("px", ExpressionType.PIXEL),
+    PERCENTAGE("%", ExpressionType.PERCENTAGE),
+    SCALAR("", ExpressionType.SCALAR),
+    EM("em", ExpressionType.EM),
+    REM("rem", ExpressionType.REM);
+
+    // per ExpressionType de bijbehorende unit, null voor types zonder unit
+    private static final Unit[] BY_TYPE = new Unit[ExpressionType.values().length];
+
+    static {
+        for (Unit unit : values()) {
+            BY_TYPE[unit.type.ordinal()] = unit;
+        }
+    }
+
+    public final String suffix;
+    public final ExpressionType type;
+
+    Unit(String suffix, ExpressionType type) {
+        this.suffix = suffix;
+        this.type = type;
+    }
+
+    /**
+     * @return the unit of a numeric type, null for colors, booleans and undefined
+     */
+    public static Unit of(ExpressionType type) {
+        return BY_TYPE[type.ordinal()];
+    }
+
+    /**
+     * @return the unit whose suffix ends the text, SCALAR when there is none
+     */
+    public static Unit ofSuffix(String text) {
+        // rem voor em, anders wint de kortere suffix
+        if (text.endsWith("rem")) return REM;
+        if (text.endsWith("em")) return EM;
+        if (text.endsWith("px")) return PIXEL;
+        if (text.endsWith("%")) return PERCENTAGE;
+        return SCALAR;
+    }
+}
@@ -0,0 +1,78 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.VariableAssignment;
+import nl.han.ica.icss.ast.VariableReference;
+import nl.han.ica.icss.ast.types.TypeTable;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The results of checking one AST, kept next to the tree instead of in it: errors, inferred
+ * types and the assignment every variable reference resolves to. All keyed by node identity.
+ *
+ * Because the checker only writes here, one parsed AST can be checked by several compilations
+ * at the same time, each with its own annotations. An instance itself is not thread-safe.
+ */
+public class Annotations {
+
+    private final Map<ASTNode, SemanticError> errors = new IdentityHashMap<>();
+    // de nodes met een fout in de volgorde waarin ze gevonden zijn
+    private final List<ASTNode> errorNodes = new ArrayList<>();
+    private final TypeTable types;
+    private final Map<VariableReference, VariableAssignment> bindings = new IdentityHashMap<>();
+
+    public Annotations() {
+        this(null);
+    }
+
+    /**
+     * @param parentTypes types looked up when this table has none for a node, may be null
+     */
+    public Annotations(TypeTable parentTypes) {
+        types = new TypeTable(parentTypes);
+    }
+
+    public void setError(ASTNode node, String description) {
+        if (errors.put(node, new SemanticError(description)) == null) {
+            errorNodes.add(node);
+        }
+    }
+
+    public SemanticError getError(ASTNode node) {
+        return errors.get(node);
+    }
+
+    public boolean hasError(ASTNode node) {
+        return errors.containsKey(node);
+    }
+
+    /**
+     * @return the errors in the order they were found
+     */
+    public List<SemanticError> getErrors() {
+        List<SemanticError> result = new ArrayList<>(errorNodes.size());
+        for (ASTNode node : errorNodes) {
+            result.add(errors.get(node));
+        }
+        return result;
+    }
+
+    public TypeTable getTypes() {
+        return types;
+    }
+
+    public void bind(VariableReference reference, VariableAssignment assignment) {
+        bindings.put(reference, assignment);
+    }
+
+    /**
+     * @return the assignment the reference resolved to, or null when it is undefined or was not checked
+     */
+    public VariableAssignment getBinding(VariableReference reference) {
+        return bindings.get(reference);
+    }
+}
@@ -2,77 +2,251 @@
 package nl.han.ica.icss.checker;
 
 import nl.han.ica.datastructures.HANLinkedList;
+import nl.han.ica.datastructures.HANStack;
 import nl.han.ica.datastructures.IHANLinkedList;
+import nl.han.ica.datastructures.IHANStack;
+import nl.han.ica.icss.CancellationToken;
 import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.flat.FlatAST;
 import nl.han.ica.icss.ast.literals.*;
 import nl.han.ica.icss.ast.operations.*;
+import nl.han.ica.icss.ast.types.Arithmetic;
 import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.ast.types.TypeTable;
+import nl.han.ica.icss.diagnostics.Diagnostic;
+import nl.han.ica.icss.diagnostics.DiagnosticSink;
+import nl.han.ica.icss.events.PhaseEvent;
+import nl.han.ica.icss.events.SlowRuleEvent;
 
 import java.util.HashMap;
+import java.util.List;
 
 public class Checker {
 
-    private IHANLinkedList<HashMap<String, ExpressionType>> variableTypes;
+    // per scope de assignment die bij een naam hoort; het type staat in de annotaties
+    private IHANLinkedList<HashMap<String, VariableAssignment>> variableTypes;
+    // fouten, types en bindingen van de laatste check; de AST zelf wordt niet veranderd
+    private Annotations annotations = new Annotations();
+    private TypeTable types = annotations.getTypes();
+    // bij checkNext: de types van de globale assignments, die blijven tussen statements bewaard
+    private TypeTable globalTypes;
+    // of er per stylerule een JFR event gemaakt moet worden, één keer per check bepaald
+    private boolean ruleEvents;
+    // krijgt elke fout zodra die gevonden wordt, mag null zijn
+    private final DiagnosticSink sink;
+    // welke properties met welke types mogen
+    private final PropertySchema schema;
+    // wordt om de CHECK_INTERVAL nodes bekeken
+    private final CancellationToken cancellation;
+    private static final int CHECK_INTERVAL = 256;
+    private int visited;
 
-    public void check(AST ast) {
+    public Checker() {
+        this(null);
+    }
+
+    /**
+     * @param sink receives every error as soon as it is found; it may stop the check by throwing
+     */
+    public Checker(DiagnosticSink sink) {
+        this(sink, PropertySchema.defaultSchema());
+    }
+
+    /**
+     * @param sink receives every error as soon as it is found, may be null
+     * @param schema the properties and value types that are allowed
+     */
+    public Checker(DiagnosticSink sink, PropertySchema schema) {
+        this(sink, schema, CancellationToken.NONE);
+    }
+
+    /**
+     * @param sink receives every error as soon as it is found, may be null
+     * @param schema the properties and value types that are allowed
+     * @param cancellation stops the check with a CompilationCancelledException once cancelled
+     */
+    public Checker(DiagnosticSink sink, PropertySchema schema, CancellationToken cancellation) {
+        this.sink = sink;
+        this.schema = schema;
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * @return the types inferred by the last check
+     */
+    public TypeTable getTypes() {
+        return types;
+    }
+
+    /**
+     * @return the errors, types and variable bindings of the last check
+     */
+    public Annotations getAnnotations() {
+        return annotations;
+    }
+
+    private void reset(Annotations annotations) {
+        this.annotations = annotations;
+        types = annotations.getTypes();
+        ruleEvents = SlowRuleEvent.isTypeEnabled();
+        visited = 0;
         variableTypes = new HANLinkedList<>();
         // push global scope (lege map)
         variableTypes.addFirst(new HashMap<>());
+    }
+
+    public void check(AST ast) {
+        check(ast, new Annotations());
+    }
+
+    /**
+     * @param annotations receives the results; errors already in it, such as imports that
+     * could not be linked, are kept and not reported again
+     */
+    public void check(AST ast, Annotations annotations) {
+        reset(annotations);
 
         if (ast == null || ast.root == null) return;
 
-        // Als ee nif hier komt dan is dat en illegale if
         for (ASTNode child : ast.root.getChildren()) {
-            if (child instanceof IfClause) {
-                // if expressies mogen alleen in style rules
-                ((IfClause) child).setError("If-expressions are only allowed inside style rules");
-                continue;
+            checkStatement(child);
+        }
+    }
+
+    /**
+     * Checks a flat AST one top-level statement at a time. The flat AST itself is read-only,
+     * so errors only reach the sink.
+     */
+    public void check(FlatAST ast) {
+        reset(new Annotations());
+
+        if (ast == null) return;
+
+        for (int child = ast.firstChild(ast.root()); child != FlatAST.NONE; child = ast.nextSibling(child)) {
+            checkStatement(ast.copy(child));
+        }
+    }
+
+    /**
+     * Starts checking a stylesheet that arrives one top-level statement at a time,
+     * see {@link #checkNext(ASTNode)}.
+     */
+    public void begin() {
+        reset(new Annotations());
+        globalTypes = new TypeTable();
+    }
+
+    /**
+     * Checks the next top-level statement after {@link #begin()}. Only the global scope and
+     * the types of global assignments are kept between statements, so the memory used does
+     * not grow with the number of statements.
+     * @return the errors, types and bindings of this statement only
+     */
+    public Annotations checkNext(ASTNode statement) {
+        annotations = new Annotations(globalTypes);
+        types = annotations.getTypes();
+        checkStatement(statement);
+        if (statement instanceof VariableAssignment) {
+            globalTypes.put(statement, types.get(statement));
+        }
+        return annotations;
+    }
+
+    private void checkStatement(ASTNode child) {
+        // Als ee nif hier komt dan is dat en illegale if
+        if (child instanceof IfClause) {
+            // if expressies mogen alleen in style rules
+            error(child, "If-expressions are only allowed inside style rules");
+            return;
+        }
+        // de ModuleCompiler vervangt imports door assignments; een import die niet lukte staat al in de annotaties
+        if (child instanceof Import) {
+            if (!annotations.hasError(child)) {
+                error(child, "Imports need the ModuleCompiler: '" + ((Import) child).path + "' was not imported");
             }
-            checkNode(child);
+            return;
         }
+        checkNode(child);
     }
 
+    private void error(ASTNode node, String description) {
+        annotations.setError(node, description);
+        if (sink != null) {
+            sink.report(Diagnostic.semantic(node, description));
+        }
+    }
+
+    /*
+     Markeringen op de werkstack van checkNode. De traversals gebruiken een expliciete stack
+     in plaats van recursie, zodat diep geneste ifs en lange rekenketens de stack niet opmaken.
+     */
+    private static final ASTNode OPEN_SCOPE = new ASTNode();
+    private static final ASTNode CLOSE_SCOPE = new ASTNode();
+    private static final ASTNode CLOSE_RULE = new ASTNode();
+    // een operand die ontbreekt, zodat de stack geen null hoeft te bevatten
+    private static final ASTNode MISSING = new ASTNode();
+    // na de operanden: combineer de types van de bovenste operatie
+    private static final ASTNode COMBINE = new ASTNode();
+
     // Node checker die bepaald wat voor node het is en de juiste handler aanroept
-    private void checkNode(ASTNode child) {
-        if (child instanceof VariableAssignment) {
-            handleVariableAssignment((VariableAssignment) child);
-        } else if (child instanceof Stylerule) {
-            checkStyleRule((Stylerule) child);
-        } else if (child instanceof Declaration) {
-            checkDeclaration((Declaration) child);
-        } else if (child instanceof IfClause) {
-            handleIfClause((IfClause) child);
+    private void checkNode(ASTNode first) {
+        IHANStack<ASTNode> pending = new HANStack<>();
+        // stylerules waarvan de body nog gecheckt wordt, met hun JFR events als die aan staan
+        IHANStack<Stylerule> openRules = new HANStack<>();
+        IHANStack<SlowRuleEvent> openEvents = new HANStack<>();
+        pending.push(first);
+
+        while (!pending.isEmpty()) {
+            ASTNode child = pending.pop();
+            if (child == OPEN_SCOPE) {
+                variableTypes.addFirst(new HashMap<>());
+            } else if (child == CLOSE_SCOPE) {
+                variableTypes.removeFirst();
+            } else if (child == CLOSE_RULE) {
+                variableTypes.removeFirst();
+                Stylerule rule = openRules.pop();
+                if (ruleEvents) SlowRuleEvent.finish(openEvents.pop(), PhaseEvent.CHECK, rule);
+            } else {
+                checkpoint();
+                if (child instanceof VariableAssignment) {
+                    handleVariableAssignment((VariableAssignment) child);
+                } else if (child instanceof Stylerule) {
+                    checkStyleRule((Stylerule) child, pending, openRules, openEvents);
+                } else if (child instanceof Declaration) {
+                    checkDeclaration((Declaration) child);
+                } else if (child instanceof IfClause) {
+                    handleIfClause((IfClause) child, pending);
+                }
+            }
         }
     }
 
-    private void handleIfClause(IfClause ifc) {
-        if (ifc == null) return;
+    // zet de nodes zo op de stack dat ze in hun eigen volgorde gecheckt worden
+    private static void pushInOrder(IHANStack<ASTNode> pending, List<ASTNode> nodes) {
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            if (nodes.get(i) != null) pending.push(nodes.get(i));
+        }
+    }
 
+    private void handleIfClause(IfClause ifc, IHANStack<ASTNode> pending) {
         // Kijkt of de if wel een boolean terug geeft
         Expression cond = ifc.getConditionalExpression();
         ExpressionType condType = inferExpressionType(cond);
         if (condType != ExpressionType.BOOL) {
-            ifc.setError("Dit is geen BOOL. en de IF gemeenschap accepteerd geen" + condType);
-        }
-
-        // checkt nieuwe scope voor if-body
-        variableTypes.addFirst(new HashMap<>());
-        // checkt body nodes
-        for (ASTNode node : ifc.body) {
-            checkNode(node);
+            error(ifc, "Dit is geen BOOL. en de IF gemeenschap accepteerd geen" + condType);
         }
-        // pop if-body scope
-        variableTypes.removeFirst();
 
-        // else (if present) krijgt zijn eigen scope
+        // else (if present) krijgt zijn eigen scope, na die van de if-body
         ElseClause elseC = ifc.getElseClause();
         if (elseC != null) {
-            variableTypes.addFirst(new HashMap<>());
-            for (ASTNode node : elseC.body) {
-                checkNode(node);
-            }
-            variableTypes.removeFirst();
+            pending.push(CLOSE_SCOPE);
+            pushInOrder(pending, elseC.body);
+            pending.push(OPEN_SCOPE);
         }
+        // nieuwe scope voor de if-body, die als eerste aan de beurt is
+        pending.push(CLOSE_SCOPE);
+        pushInOrder(pending, ifc.body);
+        pending.push(OPEN_SCOPE);
     }
 
     private void handleVariableAssignment(VariableAssignment var) {
@@ -83,124 +257,131 @@ public class Checker {
 
         if (type == ExpressionType.UNDEFINED) {
             // Als er niet duidelijk is wat voor type het is (Of als het geen type is) dan word deze foutmelding aangemaakt
-            var.setError("Dit is of een lege variable of een variable van het type'" + name + "'");
+            error(var, "Dit is of een lege variable of een variable van het type'" + name + "'");
         }
 
         // store in current (global) scope als een map entry
-        HashMap<String, ExpressionType> scope = variableTypes.getFirst();
+        types.put(var, type);
+        HashMap<String, VariableAssignment> scope = variableTypes.getFirst();
         if (name != null && scope != null) {
-            scope.put(name, type);
+            scope.put(name, var);
         }
     }
 
-    private void checkStyleRule(Stylerule rule) {
-        if (rule == null) return;
-
+    private void checkStyleRule(Stylerule rule, IHANStack<ASTNode> pending,
+                                IHANStack<Stylerule> openRules, IHANStack<SlowRuleEvent> openEvents) {
+        if (ruleEvents) openEvents.push(SlowRuleEvent.start(true));
+        openRules.push(rule);
         variableTypes.addFirst(new HashMap<>());
-        for (ASTNode child : rule.getChildren()) {
-            // style regels mogen bestaan uit declaraties, if of variable assignments
-            checkNode(child);
-        }
-
-        variableTypes.removeFirst();
+        // style regels mogen bestaan uit declaraties, if of variable assignments
+        pending.push(CLOSE_RULE);
+        pushInOrder(pending, rule.getChildren());
     }
 
     private void checkDeclaration(Declaration decl) {
         if (decl == null) return;
         Expression expr = decl.expression;
         ExpressionType type = inferExpressionType(expr);
+        types.put(decl, type);
         if (type == ExpressionType.UNDEFINED) {
-            decl.setError("Undefined expression in declaration '" + ((decl.property != null) ? decl.property.name : "?") + "'");
+            error(decl, "Undefined expression in declaration '" + ((decl.property != null) ? decl.property.name : "?") + "'");
             return;
         }
 
         // forceert dat alleen de toegestaande properties en types worden gebruikt
         String propName = (decl.property != null) ? decl.property.name : null;
         if (propName == null) {
-            decl.setError("Missing property name in declaration");
+            error(decl, "Missing property name in declaration");
             return;
         }
-        String normalized = propName.toLowerCase();
-        switch (normalized) {
-            case "color":
-            case "background-color":
-                if (type != ExpressionType.COLOR) {
-                    decl.setError("Property '" + propName + "' requires a color value (hex #rrggbb)");
-                }
-                break;
-            case "width":
-            case "height":
-                if (!(type == ExpressionType.PIXEL || type == ExpressionType.PERCENTAGE)) {
-                    decl.setError("Property '" + propName + "' requires a size in pixels (px) or percentage (%)");
-                }
-                break;
-            default:
-                decl.setError("Property '" + propName + "' is not allowed");
-                break;
+        int allowed = schema.allowedTypes(propName);
+        if (allowed == 0) {
+            error(decl, "Property '" + propName + "' is not allowed");
+        } else if ((allowed & PropertySchema.mask(type)) == 0) {
+            error(decl, "Property '" + propName + "' requires " + PropertySchema.describe(allowed));
+        }
+    }
+
+    private void checkpoint() {
+        if (++visited % CHECK_INTERVAL == 0) {
+            cancellation.throwIfCancelled();
         }
     }
 
-    private ExpressionType inferExpressionType(ASTNode node) {
-        if (node == null) return ExpressionType.UNDEFINED;
+    /*
+     Bepaalt de types van een expressie en al zijn deelexpressies, in post-order: eerst de
+     operanden van links naar rechts, dan de operatie zelf.
+     */
+    private ExpressionType inferExpressionType(ASTNode expression) {
+        if (expression == null) return ExpressionType.UNDEFINED;
+
+        IHANStack<ASTNode> pending = new HANStack<>();
+        IHANStack<Operation> operations = new HANStack<>();
+        IHANStack<ExpressionType> results = new HANStack<>();
+        pending.push(expression);
+        while (!pending.isEmpty()) {
+            ASTNode node = pending.pop();
+            if (node == MISSING) {
+                results.push(ExpressionType.UNDEFINED);
+            } else if (node == COMBINE) {
+                Operation operation = operations.pop();
+                ExpressionType right = results.pop();
+                ExpressionType left = results.pop();
+                ExpressionType type = combine(operation, left, right);
+                types.put(operation, type);
+                results.push(type);
+            } else if (node instanceof Operation) {
+                checkpoint();
+                Operation operation = (Operation) node;
+                operations.push(operation);
+                pending.push(COMBINE);
+                pending.push(operation.rhs != null ? operation.rhs : MISSING);
+                pending.push(operation.lhs != null ? operation.lhs : MISSING);
+            } else {
+                checkpoint();
+                ExpressionType type = operandType(node);
+                types.put(node, type);
+                results.push(type);
+            }
+        }
+        return results.pop();
+    }
 
-        if (node instanceof PixelLiteral) return ExpressionType.PIXEL;
-        if (node instanceof PercentageLiteral) return ExpressionType.PERCENTAGE;
-        if (node instanceof ColorLiteral) return ExpressionType.COLOR;
-        if (node instanceof ScalarLiteral) return ExpressionType.SCALAR;
-        if (node instanceof nl.han.ica.icss.ast.literals.BoolLiteral) return ExpressionType.BOOL;
+    private ExpressionType operandType(ASTNode node) {
+
+        if (node instanceof Literal) return ((Literal) node).getType();
 
         if (node instanceof VariableReference) {
             VariableReference varRef = (VariableReference) node;
             String name = varRef.name;
-            ExpressionType found = lookupVariableType(name);
-            if (found == null) {
-                varRef.setError("Undefined variable '" + name + "'");
+            VariableAssignment assignment = lookupVariable(name);
+            if (assignment == null) {
+                error(varRef, "Undefined variable '" + name + "'");
                 return ExpressionType.UNDEFINED;
             }
-            return found;
-        }
-
-        if (node instanceof AddOperation) {
-            AddOperation addOp = (AddOperation) node;
-            ExpressionType left = inferExpressionType(addOp.lhs);
-            ExpressionType right = inferExpressionType(addOp.rhs);
-            if (left == ExpressionType.UNDEFINED || right == ExpressionType.UNDEFINED) return ExpressionType.UNDEFINED;
-            if (left == right) return left;
-            return ExpressionType.UNDEFINED;
-        }
-        if (node instanceof nl.han.ica.icss.ast.operations.SubtractOperation) {
-            SubtractOperation subOp = (SubtractOperation) node;
-            ExpressionType left = inferExpressionType(subOp.lhs);
-            ExpressionType right = inferExpressionType(subOp.rhs);
-            if (left == ExpressionType.UNDEFINED || right == ExpressionType.UNDEFINED) return ExpressionType.UNDEFINED;
-            if (left == right) return left;
-            return ExpressionType.UNDEFINED;
-        }
-        if (node instanceof nl.han.ica.icss.ast.operations.MultiplyOperation) {
-            MultiplyOperation mulOp = (MultiplyOperation) node;
-            ExpressionType left = inferExpressionType(mulOp.lhs);
-            ExpressionType right = inferExpressionType(mulOp.rhs);
-            if (left == ExpressionType.UNDEFINED || right == ExpressionType.UNDEFINED) return ExpressionType.UNDEFINED;
-            // Scalar en scalar mag wel maar pixels mogen niet rekenen met pixels
-            if ((left == ExpressionType.SCALAR && right == ExpressionType.PIXEL) ||
-                    (left == ExpressionType.PIXEL && right == ExpressionType.SCALAR)) {
-                return ExpressionType.PIXEL;
-            }
-
-            if (left == ExpressionType.PIXEL && right == ExpressionType.PIXEL){
-                mulOp.setError("REKEN POLITIE. u mag hier helemaal niet rekenen met pixels!");
-            }
-            if (left == ExpressionType.SCALAR && right == ExpressionType.SCALAR) return ExpressionType.SCALAR;
-            return ExpressionType.UNDEFINED;
+            annotations.bind(varRef, assignment);
+            return types.get(assignment);
         }
         return ExpressionType.UNDEFINED;
     }
 
-    private ExpressionType lookupVariableType(String name) {
+    private ExpressionType combine(Operation operation, ExpressionType left, ExpressionType right) {
+        if (left == ExpressionType.UNDEFINED || right == ExpressionType.UNDEFINED) return ExpressionType.UNDEFINED;
+
+        // dezelfde regels als de evaluator gebruikt
+        ExpressionType result = Arithmetic.resultType(Arithmetic.Operator.of(operation), left, right);
+        if (result == ExpressionType.UNDEFINED && operation instanceof MultiplyOperation
+                && left == ExpressionType.PIXEL && right == ExpressionType.PIXEL) {
+            error(operation, "REKEN POLITIE. u mag hier helemaal niet rekenen met pixels!");
+        }
+        return result;
+    }
+
+    private VariableAssignment lookupVariable(String name) {
         if (name == null) return null;
         int scopes = variableTypes.getSize();
         for (int i = 0; i < scopes; i++) {
-            HashMap<String, ExpressionType> scope = variableTypes.get(i);
+            HashMap<String, VariableAssignment> scope = variableTypes.get(i);
             if (scope == null) continue;
             if (scope.containsKey(name)) return scope.get(name);
         }
@@ -0,0 +1,128 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.types.ExpressionType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The properties the checker accepts, with the value types allowed for each property.
+ *
+ * Every property maps to a bitmask with bit {@code 1 << type.ordinal()} set for each allowed
+ * type, so validating a declaration is one hash lookup and a bit test. The default schema is
+ * read from the resource {@value #RESOURCE}; see that file for the format.
+ */
+public final class PropertySchema {
+
+    public static final String RESOURCE = "properties.schema";
+
+    private static PropertySchema defaultSchema;
+
+    private final Map<String, Integer> allowedTypes;
+
+    private PropertySchema(Map<String, Integer> allowedTypes) {
+        this.allowedTypes = allowedTypes;
+    }
+
+    public static synchronized PropertySchema defaultSchema() {
+        if (defaultSchema == null) {
+            try (InputStream in = PropertySchema.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+                if (in == null) throw new IOException("Resource not found: " + RESOURCE);
+                defaultSchema = load(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return defaultSchema;
+    }
+
+    /**
+     * Reads a schema with one property per line: {@code name: TYPE [TYPE ...]}.
+     * Empty lines and lines starting with {@code #} are skipped.
+     */
+    public static PropertySchema load(InputStream in) throws IOException {
+        Map<String, Integer> allowedTypes = new HashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        int number = 0;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            int colon = line.indexOf(':');
+            if (colon <= 0) throw new IOException("Line " + number + ": expected 'property: TYPE ...'");
+            String name = line.substring(0, colon).trim().toLowerCase().intern();
+            int mask = 0;
+            for (String type : line.substring(colon + 1).trim().split("\\s+")) {
+                try {
+                    mask |= mask(ExpressionType.valueOf(type));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Line " + number + ": unknown type '" + type + "'");
+                }
+            }
+            allowedTypes.put(name, mask);
+        }
+        return new PropertySchema(allowedTypes);
+    }
+
+    public static int mask(ExpressionType type) {
+        return 1 << type.ordinal();
+    }
+
+    public boolean isKnown(String property) {
+        return allowedTypes(property) != 0;
+    }
+
+    /**
+     * @return the bitmask of allowed types, 0 for an unknown property
+     */
+    public int allowedTypes(String property) {
+        Integer mask = allowedTypes.get(property);
+        if (mask == null) {
+            // namen in de schema staan in kleine letters
+            mask = allowedTypes.get(property.toLowerCase());
+        }
+        return mask == null ? 0 : mask;
+    }
+
+    public boolean allows(String property, ExpressionType type) {
+        return (allowedTypes(property) & mask(type)) != 0;
+    }
+
+    public int size() {
+        return allowedTypes.size();
+    }
+
+    /**
+     * Describes the allowed types for an error message, e.g. "a size in pixels (px) or percentage (%)".
+     */
+    public static String describe(int mask) {
+        List<String> parts = new ArrayList<>();
+        List<String> sizes = new ArrayList<>();
+        if ((mask & mask(ExpressionType.PIXEL)) != 0) sizes.add("pixels (px)");
+        boolean percentage = (mask & mask(ExpressionType.PERCENTAGE)) != 0;
+        if (percentage) sizes.add("percentage (%)");
+        if ((mask & mask(ExpressionType.EM)) != 0) sizes.add("em");
+        if ((mask & mask(ExpressionType.REM)) != 0) sizes.add("rem");
+        if (percentage && sizes.size() == 1) {
+            parts.add("a percentage (%)");
+        } else if (!sizes.isEmpty()) {
+            // "a, b or c"
+            String last = sizes.remove(sizes.size() - 1);
+            parts.add("a size in " + (sizes.isEmpty() ? "" : String.join(", ", sizes) + " or ") + last);
+        }
+        if ((mask & mask(ExpressionType.COLOR)) != 0) parts.add("a color value (hex #rrggbb)");
+        if ((mask & mask(ExpressionType.SCALAR)) != 0) parts.add("a number");
+        if ((mask & mask(ExpressionType.BOOL)) != 0) parts.add("a boolean");
+        return String.join(" or ", parts);
+    }
+}
@@ -0,0 +1,54 @@
+package nl.han.ica.icss.compiler;
+
+import nl.han.ica.icss.CancellationToken;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs compiles on an executor and hands out a future per compile, so the caller's
+ * thread never waits for the compiler.
+ *
+ * A compile stops at its deadline or when its token or future is cancelled. When the
+ * deadline passes, the future still completes normally, with a result that holds the
+ * diagnostics found so far and {@link CancellationToken.Reason#DEADLINE}.
+ */
+public class AsyncCompiler {
+
+    private final Compiler compiler;
+    private final Executor executor;
+
+    public AsyncCompiler(Executor executor) {
+        this(new Compiler(), executor);
+    }
+
+    public AsyncCompiler(Compiler compiler, Executor executor) {
+        this.compiler = compiler;
+        this.executor = executor;
+    }
+
+    /**
+     * @param timeout time the compile may take, counted from this call, so waiting in
+     * the executor's queue counts as well
+     */
+    public CompletableFuture<CompilationResult> compile(String input, CompileOptions options, Duration timeout) {
+        return compile(input, options, CancellationToken.withTimeout(timeout));
+    }
+
+    /**
+     * @param cancellation stops the compile once cancelled; cancelling the returned future cancels it too
+     */
+    public CompletableFuture<CompilationResult> compile(String input, CompileOptions options,
+                                                        CancellationToken cancellation) {
+        CompletableFuture<CompilationResult> future = CompletableFuture.supplyAsync(
+                () -> compiler.compile(input, options, cancellation), executor);
+        if (cancellation != CancellationToken.NONE) {
+            // future.cancel stopt de taak niet zelf, de token wel bij het volgende controlepunt
+            future.whenComplete((result, e) -> {
+                if (future.isCancelled()) cancellation.cancel();
+            });
+        }
+        return future;
+    }
+}
@@ -0,0 +1,82 @@
+package nl.han.ica.icss.compiler;
+
+import nl.han.ica.icss.CancellationToken;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.checker.Annotations;
+import nl.han.ica.icss.diagnostics.Diagnostic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything one compile produced. The fields never change after construction and the
+ * trees are not modified by the compiler afterwards, so a result can be handed to any thread.
+ */
+public final class CompilationResult {
+
+    // de geparste boom, null als er niet geparst kon worden
+    public final AST sourceAST;
+    // de getransformeerde boom, of de geparste boom als de compile eerder stopte
+    public final AST ast;
+    // null als er niet gecheckt is
+    public final Annotations annotations;
+    public final List<Diagnostic> diagnostics;
+    // true als het maximum aantal fouten bereikt is
+    public final boolean limitReached;
+    private final int maxErrors;
+    // waarom de compile gestopt is, null als hij niet afgebroken is
+    public final CancellationToken.Reason cancelled;
+    // null als er fouten zijn
+    public final String css;
+    // duur per fase in nanoseconden, met de namen uit PhaseEvent, in de volgorde van uitvoeren
+    public final Map<String, Long> timings;
+
+    public CompilationResult(AST sourceAST, AST ast, Annotations annotations, List<Diagnostic> diagnostics,
+                             boolean limitReached, int maxErrors, CancellationToken.Reason cancelled, String css, Map<String, Long> timings) {
+        this.sourceAST = sourceAST;
+        this.ast = ast;
+        this.annotations = annotations;
+        this.diagnostics = Collections.unmodifiableList(new ArrayList<>(diagnostics));
+        this.limitReached = limitReached;
+        this.maxErrors = maxErrors;
+        this.cancelled = cancelled;
+        this.css = css;
+        this.timings = Collections.unmodifiableMap(timings);
+    }
+
+    public boolean isSuccessful() {
+        return css != null;
+    }
+
+    public boolean isCancelled() {
+        return cancelled != null;
+    }
+
+    /**
+     * @return the diagnostics as text, in the same form as {@link nl.han.ica.icss.Pipeline#getErrors()}
+     */
+    public List<String> getErrors() {
+        List<String> errors = new ArrayList<>(diagnostics.size() + 1);
+        for (Diagnostic diagnostic : diagnostics) {
+            errors.add(diagnostic.toString());
+        }
+        if (limitReached) {
+            errors.add("Too many errors, stopped after " + maxErrors);
+        }
+        if (cancelled == CancellationToken.Reason.DEADLINE) {
+            errors.add("Deadline exceeded, stopped after " + diagnostics.size() + " error(s)");
+        } else if (cancelled == CancellationToken.Reason.CANCELLED) {
+            errors.add("Compilation cancelled");
+        }
+        return errors;
+    }
+
+    /**
+     * @return the time spent in a phase in nanoseconds, 0 when the phase did not run
+     */
+    public long getTiming(String phase) {
+        return timings.getOrDefault(phase, 0L);
+    }
+}
@@ -0,0 +1,47 @@
+package nl.han.ica.icss.compiler;
+
+import java.util.Objects;
+
+/**
+ * Settings for one compile. Immutable, so one instance can be shared by every caller.
+ */
+public final class CompileOptions {
+
+    public static final CompileOptions DEFAULT = new CompileOptions(false, 0);
+
+    // evaluator en generator gebruiken de common pool
+    public final boolean parallel;
+    // 0 betekent geen maximum
+    public final int maxErrors;
+
+    public CompileOptions(boolean parallel, int maxErrors) {
+        this.parallel = parallel;
+        this.maxErrors = maxErrors;
+    }
+
+    public CompileOptions withParallel(boolean parallel) {
+        return new CompileOptions(parallel, maxErrors);
+    }
+
+    public CompileOptions withMaxErrors(int maxErrors) {
+        return new CompileOptions(parallel, maxErrors);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CompileOptions)) return false;
+        CompileOptions that = (CompileOptions) o;
+        return parallel == that.parallel && maxErrors == that.maxErrors;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(parallel, maxErrors);
+    }
+
+    @Override
+    public String toString() {
+        return "parallel=" + parallel + ",maxErrors=" + maxErrors;
+    }
+}
@@ -0,0 +1,278 @@
+package nl.han.ica.icss.compiler;
+
+import nl.han.ica.icss.CancellationToken;
+import nl.han.ica.icss.CompilationCancelledException;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.checker.Annotations;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.checker.PropertySchema;
+import nl.han.ica.icss.diagnostics.Diagnostic;
+import nl.han.ica.icss.diagnostics.DiagnosticCollector;
+import nl.han.ica.icss.diagnostics.ErrorLimitReachedException;
+import nl.han.ica.icss.events.PhaseEvent;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.ASTListener;
+import nl.han.ica.icss.parser.CancellingErrorStrategy;
+import nl.han.ica.icss.parser.ICSSLexer;
+import nl.han.ica.icss.parser.ICSSParser;
+import nl.han.ica.icss.parser.MappedCharStreams;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compiles ICSS to CSS in one call. Unlike {@link nl.han.ica.icss.Pipeline} it keeps no
+ * state between calls, so one instance can be shared by any number of threads.
+ *
+ * Every thread keeps its own lexer and parser and points them at the next input, instead
+ * of building new ones for every compile.
+ *
+ * A compile can be stopped with a {@link CancellationToken}. The token is checked between
+ * phases and every so many tokens or nodes inside them; a stopped compile returns the
+ * diagnostics found so far.
+ */
+public class Compiler {
+
+    private static final CharStream EMPTY = CharStreams.fromString("");
+
+    // aantal tokens tussen twee keer kijken of de compile gestopt moet worden
+    private static final int TOKENS_PER_CHECK = 1024;
+
+    private static final class Recognizers {
+        CancellationToken cancellation = CancellationToken.NONE;
+        int tokens;
+        final ICSSLexer lexer = new ICSSLexer(EMPTY) {
+            @Override
+            public Token nextToken() {
+                if (++tokens % TOKENS_PER_CHECK == 0) {
+                    cancellation.throwIfCancelled();
+                }
+                return super.nextToken();
+            }
+        };
+        final ICSSParser parser = new ICSSParser(new CommonTokenStream(lexer));
+    }
+
+    private final ThreadLocal<Recognizers> recognizers = ThreadLocal.withInitial(Recognizers::new);
+
+    public CompilationResult compile(String input) {
+        return compile(input, CompileOptions.DEFAULT);
+    }
+
+    public CompilationResult compile(String input, CompileOptions options) {
+        return compile(CharStreams.fromString(input), options);
+    }
+
+    /**
+     * Compiles a UTF-8 file, memory-mapped like {@link nl.han.ica.icss.Pipeline#parseFile(Path)}.
+     */
+    public CompilationResult compile(Path file, CompileOptions options) throws IOException {
+        return compile(MappedCharStreams.fromPath(file), options);
+    }
+
+    public CompilationResult compile(CharStream input, CompileOptions options) {
+        return compile(input, options, CancellationToken.NONE);
+    }
+
+    public CompilationResult compile(String input, CompileOptions options, CancellationToken cancellation) {
+        return compile(CharStreams.fromString(input), options, cancellation);
+    }
+
+    /**
+     * @param cancellation stops the compile once cancelled; the result then holds the
+     * diagnostics found so far and the reason it stopped
+     */
+    public CompilationResult compile(CharStream input, CompileOptions options, CancellationToken cancellation) {
+        Compilation compilation = new Compilation(options, cancellation);
+        compilation.run(input);
+        return compilation.result();
+    }
+
+    /**
+     * Only parses the input. The result has the parsed tree and the syntax errors, but no CSS;
+     * the tree can be compiled later with {@link #compile(AST, CompileOptions, CancellationToken)}.
+     */
+    public CompilationResult parse(String input) {
+        Compilation compilation = new Compilation(CompileOptions.DEFAULT, CancellationToken.NONE);
+        compilation.source = compilation.ast = compilation.parse(CharStreams.fromString(input));
+        return compilation.result();
+    }
+
+    /**
+     * Checks, transforms and generates a tree that was parsed before. The tree is not changed,
+     * so the same tree can be compiled again, also by other threads at the same time.
+     */
+    public CompilationResult compile(AST source, CompileOptions options, CancellationToken cancellation) {
+        Compilation compilation = new Compilation(options, cancellation);
+        compilation.runParsed(source);
+        return compilation.result();
+    }
+
+    /*
+     * De toestand van één compile; leeft alleen binnen de aanroep van compile.
+     */
+    private final class Compilation extends BaseErrorListener {
+
+        final CompileOptions options;
+        final CancellationToken cancellation;
+        final DiagnosticCollector diagnostics;
+        final Map<String, Long> timings = new LinkedHashMap<>();
+        final ForkJoinPool pool;
+        AST source;
+        AST ast;
+        Annotations annotations;
+        String css;
+        // null als de compile niet gestopt is
+        CancellationToken.Reason cancelled;
+
+        Compilation(CompileOptions options, CancellationToken cancellation) {
+            this.options = options;
+            this.cancellation = cancellation;
+            this.diagnostics = new DiagnosticCollector(options.maxErrors);
+            this.pool = options.parallel ? ForkJoinPool.commonPool() : null;
+        }
+
+        void run(CharStream input) {
+            try {
+                cancellation.throwIfCancelled();
+                source = ast = parse(input);
+            } catch (CompilationCancelledException e) {
+                cancelled = e.reason;
+                return;
+            }
+            if (diagnostics.isEmpty()) {
+                runParsed(source);
+            }
+        }
+
+        void runParsed(AST parsed) {
+            source = ast = parsed;
+            try {
+                cancellation.throwIfCancelled();
+                Checker checker = new Checker(diagnostics, PropertySchema.defaultSchema(), cancellation);
+                PhaseEvent checking = start(PhaseEvent.CHECK);
+                try {
+                    checker.check(source);
+                } finally {
+                    stop(checking);
+                    // ook na afbreken, dan met wat er tot dan toe gevonden is
+                    annotations = checker.getAnnotations();
+                }
+                if (!diagnostics.isEmpty()) return;
+
+                cancellation.throwIfCancelled();
+                Evaluator evaluator = new Evaluator(pool, cancellation);
+                PhaseEvent transforming = start(PhaseEvent.TRANSFORM);
+                try {
+                    ast = evaluator.apply(source);
+                } finally {
+                    stop(transforming);
+                }
+                if (!diagnostics.isEmpty()) return;
+
+                cancellation.throwIfCancelled();
+                PhaseEvent generating = start(PhaseEvent.GENERATE);
+                try {
+                    css = new Generator(pool).generate(ast);
+                } finally {
+                    stop(generating);
+                }
+            } catch (ErrorLimitReachedException e) {
+                // de fase is gestopt, de gevonden fouten staan al in diagnostics
+            } catch (CompilationCancelledException e) {
+                cancelled = e.reason;
+            }
+        }
+
+        private AST parse(CharStream input) {
+            Recognizers reused = recognizers.get();
+            ICSSLexer lexer = reused.lexer;
+            ICSSParser parser = reused.parser;
+            reused.cancellation = cancellation;
+            reused.tokens = 0;
+            parser.setErrorHandler(new CancellingErrorStrategy(cancellation));
+            lexer.removeErrorListeners();
+            lexer.addErrorListener(this);
+            parser.removeErrorListeners();
+            parser.addErrorListener(this);
+            try {
+                lexer.setInputStream(input);
+                CommonTokenStream tokens = new CommonTokenStream(lexer);
+                PhaseEvent lexing = start(PhaseEvent.LEX);
+                try {
+                    tokens.fill();
+                } finally {
+                    stop(lexing);
+                }
+
+                parser.setTokenStream(tokens);
+                ParseTree parseTree;
+                PhaseEvent parsing = start(PhaseEvent.PARSE);
+                try {
+                    parseTree = parser.stylesheet();
+                } finally {
+                    stop(parsing);
+                }
+
+                PhaseEvent walking = start(PhaseEvent.WALK);
+                try {
+                    ASTListener listener = new ASTListener();
+                    new ParseTreeWalker().walk(listener, parseTree);
+                    return listener.getAST();
+                } finally {
+                    stop(walking);
+                }
+            } catch (RecognitionException e) {
+                reportQuietly(Diagnostic.syntax(0, 0, e.getMessage()));
+                return new AST();
+            } catch (ParseCancellationException e) {
+                reportQuietly(Diagnostic.syntax(0, 0, "Syntax error"));
+                return new AST();
+            } catch (ErrorLimitReachedException e) {
+                return new AST();
+            } finally {
+                // de invoer en de parse tree niet vasthouden tot de volgende compile op deze thread
+                lexer.setInputStream(EMPTY);
+                parser.setTokenStream(new CommonTokenStream(lexer));
+                lexer.removeErrorListeners();
+                parser.removeErrorListeners();
+                reused.cancellation = CancellationToken.NONE;
+            }
+        }
+
+        private PhaseEvent start(String phase) {
+            timings.put(phase, System.nanoTime());
+            return PhaseEvent.start(phase);
+        }
+
+        private void stop(PhaseEvent event) {
+            event.commit();
+            timings.put(event.phase, System.nanoTime() - timings.get(event.phase));
+        }
+
+        private void reportQuietly(Diagnostic diagnostic) {
+            try {
+                diagnostics.report(diagnostic);
+            } catch (ErrorLimitReachedException ignored) { }
+        }
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                int charPositionInLine, String msg, RecognitionException e) {
+            diagnostics.report(Diagnostic.syntax(line, charPositionInLine + 1, msg));
+        }
+
+        CompilationResult result() {
+            return new CompilationResult(source, ast, annotations, diagnostics.getDiagnostics(),
+                    diagnostics.isLimitReached(), options.maxErrors, cancelled, css, timings);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package nl.han.ica.icss.compiler;
+
+import nl.han.ica.icss.ContentHash;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Makes concurrent compiles of the same input share one compile.
+ *
+ * The first caller for an input and options compiles it; callers that ask for the same
+ * content hash and options while that compile is running wait for it and get the same
+ * result. Nothing is kept after the compile finishes, so this is not a cache: a later
+ * caller compiles again.
+ */
+public class SingleFlightCompiler {
+
+    private static final class Key {
+        final String hash;
+        final CompileOptions options;
+
+        Key(String hash, CompileOptions options) {
+            this.hash = hash;
+            this.options = options;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return hash.equals(that.hash) && options.equals(that.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hash, options);
+        }
+    }
+
+    private final Compiler compiler;
+    private final ConcurrentHashMap<Key, CompletableFuture<CompilationResult>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder compilations = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    public SingleFlightCompiler() {
+        this(new Compiler());
+    }
+
+    public SingleFlightCompiler(Compiler compiler) {
+        this.compiler = compiler;
+    }
+
+    public CompilationResult compile(String input, CompileOptions options) {
+        return compile(ContentHash.of(input), input, options);
+    }
+
+    /**
+     * For callers that already hashed the input.
+     * @param hash the {@link ContentHash} of the input
+     */
+    public CompilationResult compile(String hash, String input, CompileOptions options) {
+        Key key = new Key(hash, options);
+        CompletableFuture<CompilationResult> mine = new CompletableFuture<>();
+        CompletableFuture<CompilationResult> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            shared.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error) throw (Error) e.getCause();
+                throw e;
+            }
+        }
+
+        compilations.increment();
+        try {
+            CompilationResult result = compiler.compile(input, options);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            // pas na het invullen weghalen, anders start een nieuwe aanroeper een tweede compile
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * @return the number of compiles that actually ran
+     */
+    public long getCompilations() {
+        return compilations.sum();
+    }
+
+    /**
+     * @return the number of callers that got the result of a compile already running,
+     * i.e. the number of compiles saved
+     */
+    public long getShared() {
+        return shared.sum();
+    }
+
+    /**
+     * @return the number of compiles running right now
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
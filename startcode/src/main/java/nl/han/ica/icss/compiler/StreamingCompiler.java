@@ -0,0 +1,157 @@
+package nl.han.ica.icss.compiler;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.ast.Stylesheet;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.checker.PropertySchema;
+import nl.han.ica.icss.diagnostics.Diagnostic;
+import nl.han.ica.icss.diagnostics.DiagnosticCollector;
+import nl.han.ica.icss.diagnostics.ErrorLimitReachedException;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.ASTListener;
+import nl.han.ica.icss.parser.ICSSLexer;
+import nl.han.ica.icss.parser.ICSSParser;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles a stylesheet one top-level statement at a time, for inputs too large to hold
+ * as a tree.
+ *
+ * The input is read through an unbuffered char and token stream. Every statement is parsed,
+ * checked, evaluated and generated on its own and written to the output before the next one
+ * is read; only the global variables are kept. Memory therefore depends on the largest
+ * statement and the number of global variables, not on the size of the file.
+ *
+ * Output is written as long as no error has been found. After the first error the rest of
+ * the input is still checked, so all errors are reported, but nothing more is written.
+ */
+public class StreamingCompiler {
+
+    private final CompileOptions options;
+
+    public StreamingCompiler() {
+        this(CompileOptions.DEFAULT);
+    }
+
+    /**
+     * @param options only the error limit is used; streaming is always sequential
+     */
+    public StreamingCompiler(CompileOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * @return the errors, empty when the whole stylesheet was written
+     */
+    public List<Diagnostic> compile(Reader input, Writer output) throws IOException {
+        DiagnosticCollector diagnostics = new DiagnosticCollector(options.maxErrors);
+        BaseErrorListener errors = new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                    int charPositionInLine, String msg, RecognitionException e) {
+                diagnostics.report(Diagnostic.syntax(line, charPositionInLine + 1, msg));
+            }
+        };
+
+        ICSSLexer lexer = new ICSSLexer(new UnbufferedCharStream(input));
+        // de char stream vergeet gelezen tekens, dus de tokens moeten hun tekst zelf bewaren
+        lexer.setTokenFactory(new CommonTokenFactory(true));
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(errors);
+        TokenStream tokens = new UnbufferedTokenStream<>(lexer);
+        ICSSParser parser = new ICSSParser(tokens);
+        parser.setErrorHandler(new StreamingErrorStrategy());
+        parser.removeErrorListeners();
+        parser.addErrorListener(errors);
+
+        Checker checker = new Checker(diagnostics, PropertySchema.defaultSchema());
+        checker.begin();
+        Evaluator evaluator = new Evaluator();
+        evaluator.begin();
+        Generator generator = new Generator();
+        boolean syntaxErrors = false;
+
+        try {
+            while (tokens.LA(1) != Token.EOF) {
+                int before = tokens.index();
+                int errorsBefore = diagnostics.size();
+                ICSSParser.StatementContext parsed = parser.statement();
+                if (tokens.index() == before) {
+                    // niets gelezen, een los token overslaan zodat de lus verder komt
+                    parser.consume();
+                }
+                syntaxErrors |= diagnostics.size() > errorsBefore;
+                if (syntaxErrors) continue;
+
+                for (ASTNode statement : toAST(parsed)) {
+                    checker.checkNext(statement);
+                    if (!diagnostics.isEmpty()) continue;
+
+                    for (ASTNode evaluated : evaluator.evaluateNext(statement)) {
+                        if (evaluated instanceof Stylerule) {
+                            ArrayList<ASTNode> body = new ArrayList<>(1);
+                            body.add(evaluated);
+                            output.write(generator.generate(new AST(new Stylesheet(body))));
+                        }
+                    }
+                }
+            }
+        } catch (ErrorLimitReachedException e) {
+            // gestopt, de gevonden fouten staan al in diagnostics
+        }
+        output.flush();
+        return diagnostics.getDiagnostics();
+    }
+
+    // de boom van één statement; de listener krijgt zelf een stylesheet om aan te hangen
+    private static List<ASTNode> toAST(ICSSParser.StatementContext parsed) {
+        ASTListener listener = new ASTListener();
+        listener.enterStylesheet(null);
+        new ParseTreeWalker().walk(listener, parsed);
+        return listener.getAST().root.body;
+    }
+
+    /*
+     * De standaard strategie vraagt bij sommige fouten de tekst van tokens op die een
+     * unbuffered stream al vergeten is; hier wordt alleen het token van de fout gebruikt.
+     */
+    private static class StreamingErrorStrategy extends DefaultErrorStrategy {
+        @Override
+        protected void reportNoViableAlternative(Parser recognizer, NoViableAltException e) {
+            String msg = "no viable alternative at input " + getTokenErrorDisplay(e.getOffendingToken());
+            recognizer.notifyErrorListeners(e.getOffendingToken(), msg, e);
+        }
+    }
+
+    /**
+     * Usage: StreamingCompiler input.icss output.css
+     */
+    public static void main(String[] args) throws IOException {
+        Path source = Paths.get(args[0]);
+        Path target = Paths.get(args[1]);
+        long start = System.nanoTime();
+        List<Diagnostic> errors;
+        try (Reader in = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+             Writer out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            errors = new StreamingCompiler().compile(in, out);
+        }
+        for (Diagnostic error : errors) {
+            System.out.println(error);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("%s: %d error(s), %.1f s, heap in use %d MB%n", source, errors.size(),
+                (System.nanoTime() - start) / 1e9, (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+    }
+}
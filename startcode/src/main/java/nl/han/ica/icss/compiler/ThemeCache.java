@@ -0,0 +1,385 @@
+package nl.han.ica.icss.compiler;
+
+import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.datastructures.IHANStack;
+import nl.han.ica.icss.CancellationToken;
+import nl.han.ica.icss.ContentHash;
+import nl.han.ica.icss.ast.*;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Caches the CSS of theme variants: a base stylesheet compiled with a set of variable
+ * overrides, e.g. one set per tenant.
+ *
+ * Entries are keyed by the content hash of the stylesheet and a hash of the overrides.
+ * The cache holds at most a given number of bytes and evicts the least recently used
+ * entries first; entries can also expire after a fixed time. Every base stylesheet is
+ * parsed once and its tree is shared by all its variants; the trees count towards the
+ * same byte budget as the CSS. Concurrent misses for the same variant share one compile.
+ */
+public class ThemeCache {
+
+    private static final class Key {
+        final String stylesheet;
+        // null voor de geparste basis zelf
+        final String overrides;
+
+        Key(String stylesheet, String overrides) {
+            this.stylesheet = stylesheet;
+            this.overrides = overrides;
+        }
+
+        static Key base(String stylesheet) {
+            return new Key(stylesheet, null);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return stylesheet.equals(that.stylesheet) && Objects.equals(overrides, that.overrides);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(stylesheet, overrides);
+        }
+    }
+
+    // een lopende compile hoort bij één generatie, zodat niemand na invalidate op een oude wacht
+    private static final class Flight {
+        final Key key;
+        final long generation;
+
+        Flight(Key key, long generation) {
+            this.key = key;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Flight)) return false;
+            Flight that = (Flight) o;
+            return key.equals(that.key) && generation == that.generation;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + Long.hashCode(generation);
+        }
+    }
+
+    private static final class Entry {
+        // precies één van beide is gezet
+        final String css;
+        final AST base;
+        final long bytes;
+        final long created;
+
+        private Entry(String css, AST base, long bytes, long created) {
+            this.css = css;
+            this.base = base;
+            this.bytes = bytes;
+            this.created = created;
+        }
+
+        static Entry css(String css, long created) {
+            // een String kost ongeveer twee bytes per teken
+            return new Entry(css, null, 2L * css.length(), created);
+        }
+
+        static Entry base(AST base, long created) {
+            return new Entry(null, base, estimateBytes(base), created);
+        }
+    }
+
+    // ruwe schatting van een knoop met zijn velden en kinderlijst
+    static final long NODE_BYTES = 96;
+
+    private final Compiler compiler;
+    private final long maxBytes;
+    // 0 betekent geen verlooptijd
+    private final long ttlNanos;
+    // varianten en bases samen, in toegangsvolgorde, de oudste staat vooraan
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private int bases = 0;
+    // gaat omhoog bij invalidate en clear; een miss uit een oudere generatie slaat niets op
+    private long generation = 0;
+    private final ConcurrentHashMap<Flight, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes the most the cache holds: CSS counted as two bytes per character,
+     *                 base trees as {@link #NODE_BYTES} per node
+     * @param ttl how long an entry stays valid, or null to keep entries until evicted
+     */
+    public ThemeCache(Compiler compiler, long maxBytes, Duration ttl) {
+        this.compiler = compiler;
+        this.maxBytes = maxBytes;
+        this.ttlNanos = ttl == null ? 0 : ttl.toNanos();
+    }
+
+    public ThemeCache(long maxBytes) {
+        this(new Compiler(), maxBytes, null);
+    }
+
+    /**
+     * @return the CSS of the stylesheet with the overrides applied
+     * @throws IllegalArgumentException when the variant does not compile; the message holds the errors
+     */
+    public String get(String stylesheet, Map<String, Literal> overrides) {
+        return get(ContentHash.of(stylesheet), stylesheet, overrides);
+    }
+
+    /**
+     * For callers that keep the hash of their stylesheet, so hits do not hash it again.
+     * @param hash the {@link ContentHash} of the stylesheet
+     */
+    public String get(String hash, String stylesheet, Map<String, Literal> overrides) {
+        Key key = new Key(hash, hashOf(overrides));
+        long current;
+        synchronized (this) {
+            Entry entry = lookup(key);
+            if (entry != null) {
+                hits.increment();
+                return entry.css;
+            }
+            current = generation;
+        }
+        misses.increment();
+
+        // buiten het slot compileren, zodat hits niet op een compile wachten
+        return load(new Flight(key, current), () -> {
+            AST base = base(hash, stylesheet, current);
+            CompilationResult result = compiler.compile(withOverrides(base, overrides), CompileOptions.DEFAULT,
+                    CancellationToken.NONE);
+            if (!result.isSuccessful()) {
+                throw new IllegalArgumentException(String.join("\n", result.getErrors()));
+            }
+            return Entry.css(result.css, System.nanoTime());
+        }).css;
+    }
+
+    private AST base(String hash, String stylesheet, long current) {
+        Key key = Key.base(hash);
+        synchronized (this) {
+            Entry entry = lookup(key);
+            if (entry != null) return entry.base;
+        }
+        return load(new Flight(key, current), () -> {
+            CompilationResult parsed = compiler.parse(stylesheet);
+            if (!parsed.diagnostics.isEmpty()) {
+                throw new IllegalArgumentException(String.join("\n", parsed.getErrors()));
+            }
+            return Entry.base(parsed.sourceAST, System.nanoTime());
+        }).base;
+    }
+
+    /*
+     * Dezelfde single-flight als SingleFlightCompiler: de eerste aanroeper laadt en slaat op,
+     * wie tegelijk hetzelfde vraagt wacht op zijn resultaat.
+     */
+    private Entry load(Flight flight, Supplier<Entry> loader) {
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> running = inFlight.putIfAbsent(flight, mine);
+        if (running != null) {
+            shared.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error) throw (Error) e.getCause();
+                throw e;
+            }
+        }
+
+        try {
+            Entry entry = loader.get();
+            put(flight, entry);
+            mine.complete(entry);
+            return entry;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flight, mine);
+        }
+    }
+
+    /**
+     * Removes every variant of a stylesheet, e.g. after the base stylesheet changed.
+     * Misses that started before this call still return their CSS but do not store it.
+     * @param hash the {@link ContentHash} of the old stylesheet
+     * @return the number of variants removed
+     */
+    public synchronized int invalidate(String hash) {
+        generation++;
+        int removed = 0;
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> entry = iterator.next();
+            if (entry.getKey().stylesheet.equals(hash)) {
+                if (entry.getValue().base != null) bases--;
+                else removed++;
+                bytes -= entry.getValue().bytes;
+                iterator.remove();
+            }
+        }
+        return removed;
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        bytes = 0;
+        bases = 0;
+    }
+
+    private synchronized void put(Flight flight, Entry entry) {
+        // gestart voor een invalidate of clear: het resultaat kan verouderd zijn
+        if (flight.generation != generation) return;
+        // groter dan de hele cache: niet bewaren
+        if (entry.bytes > maxBytes) return;
+        Entry old = entries.put(flight.key, entry);
+        if (old != null) bytes -= old.bytes;
+        else if (entry.base != null) bases++;
+        bytes += entry.bytes;
+
+        Iterator<Entry> oldest = entries.values().iterator();
+        while (bytes > maxBytes) {
+            Entry evicted = oldest.next();
+            bytes -= evicted.bytes;
+            if (evicted.base != null) bases--;
+            oldest.remove();
+            evictions.increment();
+        }
+    }
+
+    // null als er niets is of als het verlopen is
+    private Entry lookup(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null || !expired(entry)) return entry;
+        entries.remove(key);
+        bytes -= entry.bytes;
+        if (entry.base != null) bases--;
+        return null;
+    }
+
+    private boolean expired(Entry entry) {
+        return ttlNanos > 0 && System.nanoTime() - entry.created > ttlNanos;
+    }
+
+    static long estimateBytes(AST tree) {
+        long nodes = 0;
+        IHANStack<ASTNode> pending = new HANStack<>();
+        pending.push(tree.root);
+        while (!pending.isEmpty()) {
+            ASTNode node = pending.pop();
+            nodes++;
+            for (ASTNode child : node.getChildren()) {
+                if (child != null) pending.push(child);
+            }
+        }
+        return nodes * NODE_BYTES;
+    }
+
+    /*
+     * Een nieuwe boom met dezelfde statements, behalve dat globale assignments aan een
+     * overschreven variabele de waarde uit de overrides krijgen. Variabelen die de basis
+     * niet toekent komen vooraan. De rest van de boom wordt gedeeld; de compiler verandert hem niet.
+     */
+    static AST withOverrides(AST base, Map<String, Literal> overrides) {
+        if (overrides.isEmpty()) return base;
+
+        ArrayList<ASTNode> body = new ArrayList<>(base.root.body.size() + overrides.size());
+        Set<String> assigned = new HashSet<>();
+        for (ASTNode node : base.root.body) {
+            if (node instanceof VariableAssignment) {
+                assigned.add(((VariableAssignment) node).name.name);
+            }
+        }
+        for (Map.Entry<String, Literal> override : overrides.entrySet()) {
+            if (!assigned.contains(override.getKey())) {
+                body.add(assignment(override.getKey(), override.getValue()));
+            }
+        }
+        for (ASTNode node : base.root.body) {
+            Literal value = node instanceof VariableAssignment
+                    ? overrides.get(((VariableAssignment) node).name.name) : null;
+            if (value == null) {
+                body.add(node);
+                continue;
+            }
+            VariableAssignment replaced = assignment(((VariableAssignment) node).name.name, value);
+            replaced.setPosition(node.getLine(), node.getColumn());
+            body.add(replaced);
+        }
+        return new AST(new Stylesheet(body));
+    }
+
+    private static VariableAssignment assignment(String name, Literal value) {
+        return (VariableAssignment) new VariableAssignment()
+                .addChild(new VariableReference(name))
+                .addChild(value);
+    }
+
+    // op naam gesorteerd, zodat de volgorde van de map niet uitmaakt
+    static String hashOf(Map<String, Literal> overrides) {
+        if (overrides.isEmpty()) return "";
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Literal> override : new TreeMap<>(overrides).entrySet()) {
+            text.append(override.getKey()).append('=').append(override.getValue()).append('\n');
+        }
+        return ContentHash.of(text.toString());
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of misses that waited for a compile already running
+     */
+    public long getShared() {
+        return shared.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return hits divided by lookups, 0 before the first lookup
+     */
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the number of cached variants; the base trees are not counted
+     */
+    public synchronized int size() {
+        return entries.size() - bases;
+    }
+}
@@ -0,0 +1,44 @@
+package nl.han.ica.icss.diagnostics;
+
+import nl.han.ica.icss.ast.ASTNode;
+
+/**
+ * An error found while compiling, with the position in the source where it was found.
+ * Line and column are 0 when the position is unknown, e.g. for ASTs that were not parsed.
+ */
+public class Diagnostic {
+
+    public enum Kind {
+        SYNTAX,
+        SEMANTIC
+    }
+
+    public final Kind kind;
+    public final int line;
+    public final int column;
+    public final String message;
+
+    public Diagnostic(Kind kind, int line, int column, String message) {
+        this.kind = kind;
+        this.line = line;
+        this.column = column;
+        this.message = message;
+    }
+
+    public static Diagnostic syntax(int line, int column, String message) {
+        return new Diagnostic(Kind.SYNTAX, line, column, message);
+    }
+
+    public static Diagnostic semantic(ASTNode node, String message) {
+        return new Diagnostic(Kind.SEMANTIC, node.getLine(), node.getColumn(), message);
+    }
+
+    @Override
+    public String toString() {
+        String position = line > 0 ? " at " + line + ":" + column : "";
+        if (kind == Kind.SYNTAX) {
+            return "Syntax error" + position + ": " + message;
+        }
+        return "ERROR" + position + ": " + message;
+    }
+}
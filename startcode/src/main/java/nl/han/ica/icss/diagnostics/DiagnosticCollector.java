@@ -0,0 +1,62 @@
+package nl.han.ica.icss.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects diagnostics in the order they are reported, optionally up to a maximum.
+ */
+public class DiagnosticCollector implements DiagnosticSink {
+
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    // 0 betekent geen maximum
+    private int maxErrors;
+    private boolean limitReached = false;
+
+    public DiagnosticCollector() {
+        this(0);
+    }
+
+    public DiagnosticCollector(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    @Override
+    public void report(Diagnostic diagnostic) {
+        diagnostics.add(diagnostic);
+        if (maxErrors > 0 && diagnostics.size() >= maxErrors) {
+            limitReached = true;
+            throw new ErrorLimitReachedException(maxErrors);
+        }
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
+    public int getMaxErrors() {
+        return maxErrors;
+    }
+
+    public void setMaxErrors(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    public boolean isLimitReached() {
+        return limitReached;
+    }
+
+    public boolean isEmpty() {
+        return diagnostics.isEmpty();
+    }
+
+    public int size() {
+        return diagnostics.size();
+    }
+
+    public void clear() {
+        diagnostics.clear();
+        limitReached = false;
+    }
+}
@@ -0,0 +1,13 @@
+package nl.han.ica.icss.diagnostics;
+
+/**
+ * Receives errors as soon as a compiler phase finds them.
+ */
+public interface DiagnosticSink {
+    /**
+     * Reports an error. Implementations may throw {@link ErrorLimitReachedException}
+     * to stop the phase that reported it.
+     * @param diagnostic the error
+     */
+    void report(Diagnostic diagnostic);
+}
@@ -0,0 +1,12 @@
+package nl.han.ica.icss.diagnostics;
+
+/**
+ * Thrown by a sink when the maximum number of errors is reached, to stop the current phase.
+ */
+public class ErrorLimitReachedException extends RuntimeException {
+
+    public ErrorLimitReachedException(int limit) {
+        // geen stack trace nodig, dit is een gewone manier om een fase te stoppen
+        super("Too many errors, stopped after " + limit, null, false, false);
+    }
+}
@@ -0,0 +1,42 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one phase of a compile: lex, parse, walk, check, transform or generate.
+ * Disabled unless a recording turns it on, e.g. with the icss.jfc template.
+ */
+@Name("nl.han.ica.icss.Phase")
+@Label("ICSS Compiler Phase")
+@Description("Duration of one phase of an ICSS compile")
+@Category("ICSS")
+@Enabled(false)
+@StackTrace(false)
+public class PhaseEvent extends Event {
+
+    public static final String LEX = "lex";
+    public static final String PARSE = "parse";
+    public static final String WALK = "walk";
+    public static final String CHECK = "check";
+    public static final String TRANSFORM = "transform";
+    public static final String GENERATE = "generate";
+
+    @Label("Phase")
+    public String phase;
+
+    /**
+     * Creates the event and starts timing; call {@link #commit()} when the phase is done.
+     */
+    public static PhaseEvent start(String phase) {
+        PhaseEvent event = new PhaseEvent();
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,70 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import nl.han.ica.icss.ast.Stylerule;
+
+import java.util.stream.Collectors;
+
+/**
+ * JFR event for a style rule whose check, evaluation or generation took longer than the
+ * threshold. Disabled by default.
+ *
+ * The phases ask {@link #isTypeEnabled()} once per run, not per rule, and skip the event
+ * entirely when it is off; the selector text is only built for rules that pass the threshold.
+ */
+@Name("nl.han.ica.icss.SlowRule")
+@Label("ICSS Slow Rule")
+@Description("A style rule that took longer than the threshold in one phase")
+@Category("ICSS")
+@Enabled(false)
+@Threshold("1 ms")
+@StackTrace(false)
+public class SlowRuleEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(SlowRuleEvent.class);
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Selectors")
+    public String selectors;
+
+    @Label("Line")
+    public int line;
+
+    public static boolean isTypeEnabled() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * @return a started event, or null when the event type is off
+     */
+    public static SlowRuleEvent start(boolean enabled) {
+        if (!enabled) return null;
+        SlowRuleEvent event = new SlowRuleEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it when it is over the threshold. Does nothing for null.
+     */
+    public static void finish(SlowRuleEvent event, String phase, Stylerule rule) {
+        if (event == null) return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.selectors = rule.selectors.stream().map(Object::toString).collect(Collectors.joining(", "));
+            event.line = rule.getLine();
+            event.commit();
+        }
+    }
+}
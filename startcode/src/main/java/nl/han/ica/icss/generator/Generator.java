@@ -1,31 +1,210 @@
 package nl.han.ica.icss.generator;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.stream.Collectors;
 import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.flat.FlatAST;
 import nl.han.ica.icss.ast.literals.BoolLiteral;
 import nl.han.ica.icss.ast.literals.ColorLiteral;
-import nl.han.ica.icss.ast.literals.PercentageLiteral;
-import nl.han.ica.icss.ast.literals.PixelLiteral;
-import nl.han.ica.icss.ast.literals.ScalarLiteral;
+import nl.han.ica.icss.ast.literals.DimensionLiteral;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.events.PhaseEvent;
+import nl.han.ica.icss.events.SlowRuleEvent;
 
 public class Generator {
 
+    // aantal stylerules dat een worker in een eigen buffer rendert
+    private static final int RULES_PER_CHUNK = 64;
+
+    // null betekent sequentieel genereren
+    private final ForkJoinPool pool;
+
+    public Generator() {
+        this(null);
+    }
+
+    /**
+     * Creates a generator that renders chunks of style rules concurrently on the given pool.
+     * The chunks are joined in source order, so the output is identical to sequential generation.
+     * @param pool the pool to render chunks on, or null to generate sequentially
+     */
+    public Generator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
     public String generate(AST ast) {
         if (ast == null || ast.root == null) return "";
-        return generateStylesheet(ast.root);
+        if (pool == null) {
+            return generateStylesheet(ast.root);
+        }
+        StringBuilder css = new StringBuilder();
+        for (String chunk : generateChunks(ast.root)) {
+            css.append(chunk);
+        }
+        return css.toString();
+    }
+
+    /**
+     * Writes the generated CSS (UTF-8) to the channel, using one gathering write for all chunks.
+     * @param ast the AST to generate CSS for
+     * @param channel the channel to write to, at its current position
+     * @return the number of bytes written
+     */
+    public long generate(AST ast, FileChannel channel) throws IOException {
+        if (ast == null || ast.root == null) return 0;
+        String[] chunks = pool == null
+                ? new String[] { generateStylesheet(ast.root) }
+                : generateChunks(ast.root);
+
+        ByteBuffer[] buffers = new ByteBuffer[chunks.length];
+        long remaining = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            buffers[i] = ByteBuffer.wrap(chunks[i].getBytes(StandardCharsets.UTF_8));
+            remaining += buffers[i].remaining();
+        }
+        long total = remaining;
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        return total;
+    }
+
+    /**
+     * Generates CSS straight from the arrays of a transformed flat AST, without materializing nodes.
+     * Always sequential.
+     */
+    public String generate(FlatAST ast) {
+        StringBuilder css = new StringBuilder();
+        if (ast == null) return "";
+        for (int rule = ast.firstChild(ast.root()); rule != FlatAST.NONE; rule = ast.nextSibling(rule)) {
+            if (ast.kind(rule) != NodeKinds.STYLERULE) continue;
+
+            StringBuilder selectors = new StringBuilder();
+            StringBuilder declarations = new StringBuilder();
+            for (int child = ast.firstChild(rule); child != FlatAST.NONE; child = ast.nextSibling(child)) {
+                switch (ast.kind(child)) {
+                    case NodeKinds.TAG_SELECTOR:
+                    case NodeKinds.CLASS_SELECTOR:
+                    case NodeKinds.ID_SELECTOR:
+                        if (selectors.length() > 0) selectors.append(", ");
+                        selectors.append(ast.string(child));
+                        break;
+                    case NodeKinds.DECLARATION:
+                        declarations.append("  ").append(generateDeclaration(ast, child));
+                        break;
+                    default:
+                        break;
+                }
+            }
+            css.append(selectors).append(" {\n").append(declarations).append("}\n").append("\n");
+        }
+        return css.toString();
+    }
+
+    private String generateDeclaration(FlatAST ast, int declaration) {
+        String prop = "";
+        String val = "";
+        for (int child = ast.firstChild(declaration); child != FlatAST.NONE; child = ast.nextSibling(child)) {
+            switch (ast.kind(child)) {
+                case NodeKinds.PROPERTY_NAME:
+                    prop = ast.string(child);
+                    break;
+                case NodeKinds.PIXEL:
+                case NodeKinds.PERCENTAGE:
+                case NodeKinds.SCALAR:
+                case NodeKinds.EM:
+                case NodeKinds.REM:
+                    val = DimensionLiteral.format(ast.value(child), NodeKinds.unitOf(ast.kind(child)));
+                    break;
+                case NodeKinds.COLOR:
+                    val = ColorLiteral.format((int) ast.value(child));
+                    break;
+                case NodeKinds.FALSE:
+                    val = "false";
+                    break;
+                case NodeKinds.TRUE:
+                    val = "true";
+                    break;
+                default:
+                    // niet geëvalueerde expressie, net als bij de object AST
+                    val = ast.copy(child).toString();
+                    break;
+            }
+        }
+        return prop + ": " + val + ";\n";
     }
 
     private String generateStylesheet(Stylesheet stylesheet) {
         StringBuilder css = new StringBuilder();
+        // één keer per stylesheet bepalen, niet per stylerule
+        boolean ruleEvents = SlowRuleEvent.isTypeEnabled();
         for (ASTNode child : stylesheet.getChildren()) {
             if (child instanceof Stylerule) {
-                css.append(generateStylerule((Stylerule) child)).append("\n");
+                css.append(generateStylerule((Stylerule) child, ruleEvents)).append("\n");
             }
         }
         return css.toString();
     }
 
-    private String generateStylerule(Stylerule stylerule) {
+    private String[] generateChunks(Stylesheet stylesheet) {
+        List<Stylerule> rules = new ArrayList<>();
+        for (ASTNode child : stylesheet.getChildren()) {
+            if (child instanceof Stylerule) {
+                rules.add((Stylerule) child);
+            }
+        }
+        String[] chunks = new String[(rules.size() + RULES_PER_CHUNK - 1) / RULES_PER_CHUNK];
+        pool.invoke(new ChunkTask(rules, chunks, SlowRuleEvent.isTypeEnabled(), 0, chunks.length));
+        return chunks;
+    }
+
+    /*
+     * Renders a range of chunks, splitting it in halves until a single chunk is left.
+     * Every chunk goes into its own slot, so joining the slots keeps the source order.
+     */
+    private class ChunkTask extends RecursiveAction {
+        private final List<Stylerule> rules;
+        private final String[] chunks;
+        private final boolean ruleEvents;
+        private final int from;
+        private final int to;
+
+        ChunkTask(List<Stylerule> rules, String[] chunks, boolean ruleEvents, int from, int to) {
+            this.rules = rules;
+            this.chunks = chunks;
+            this.ruleEvents = ruleEvents;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                for (int chunk = from; chunk < to; chunk++) {
+                    StringBuilder css = new StringBuilder();
+                    int end = Math.min(rules.size(), (chunk + 1) * RULES_PER_CHUNK);
+                    for (int i = chunk * RULES_PER_CHUNK; i < end; i++) {
+                        css.append(generateStylerule(rules.get(i), ruleEvents)).append("\n");
+                    }
+                    chunks[chunk] = css.toString();
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ChunkTask(rules, chunks, ruleEvents, from, middle),
+                    new ChunkTask(rules, chunks, ruleEvents, middle, to));
+        }
+    }
+
+    private String generateStylerule(Stylerule stylerule, boolean ruleEvents) {
+        SlowRuleEvent event = SlowRuleEvent.start(ruleEvents);
         StringBuilder css = new StringBuilder();
         String selectors = stylerule.selectors.stream()
                 .map(ASTNode::toString)
@@ -33,6 +212,7 @@ public class Generator {
         css.append(selectors);
         css.append(generateDeclarations(stylerule));
         css.append("}\n");
+        SlowRuleEvent.finish(event, PhaseEvent.GENERATE, stylerule);
         return css.toString();
     }
 
@@ -49,23 +229,36 @@ public class Generator {
 
     private String generateDeclaration(Declaration declaration) {
         String prop = declaration.property != null ? declaration.property.name : "";
-        String val = declaration.expression != null ? generateExpression(declaration.expression) : "";
+        String val;
+        // het type van de waarde zelf, niet dat van de checker: een variabele die in een if
+        // opnieuw wordt toegekend kan na het inlinen een ander type hebben
+        if (declaration.expression instanceof Literal && ((Literal) declaration.expression).getType() != ExpressionType.UNDEFINED) {
+            val = formatLiteral((Literal) declaration.expression);
+        } else {
+            val = declaration.expression != null ? generateExpression(declaration.expression) : "";
+        }
         return prop + ": " + val + ";\n";
     }
 
+    private static String formatLiteral(Literal literal) {
+        switch (literal.getType()) {
+            case COLOR: return ((ColorLiteral) literal).toHex();
+            case BOOL: return ((BoolLiteral) literal).value ? "true" : "false";
+            default: return ((DimensionLiteral) literal).toCss();
+        }
+    }
+
     private String generateExpression(Expression expression) {
         if (expression == null) return "";
 
+        // alle getallen, welke unit ook, delen één notatie
+        if (expression instanceof DimensionLiteral) {
+            return ((DimensionLiteral) expression).toCss();
+        }
         String className = expression.getClass().getSimpleName();
         switch (className) {
-            case "PercentageLiteral":
-                return ((PercentageLiteral) expression).value + "%";
-            case "PixelLiteral":
-                return ((PixelLiteral) expression).value + "px";
             case "ColorLiteral":
-                return ((ColorLiteral) expression).value;
-            case "ScalarLiteral":
-                return Integer.toString(((ScalarLiteral) expression).value);
+                return ((ColorLiteral) expression).toHex();
             case "BoolLiteral":
                 return ((BoolLiteral) expression).value ? "true" : "false";
             default:
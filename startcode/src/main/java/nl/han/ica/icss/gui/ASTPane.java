@@ -6,13 +6,18 @@ import javafx.scene.control.TreeCell;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
 import javafx.scene.layout.BorderPane;
+import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.datastructures.IHANStack;
 import nl.han.ica.icss.ast.AST;
 import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.checker.Annotations;
 
 public class ASTPane extends BorderPane {
 
     private TreeView<ASTNode> content;
     private Label title;
+    // fouten uit de laatste check, null als er niet gecheckt is
+    private Annotations annotations;
 
     public ASTPane () {
 		super();
@@ -30,7 +35,7 @@ public class ASTPane extends BorderPane {
                     setText("");
                 } else {
                     setText(item.getNodeLabel());
-                    if(item.hasError()) {
+                    if(item.hasError() || (annotations != null && annotations.hasError(item))) {
                         getStyleClass().add("error");
                     }
                 }
@@ -48,16 +53,34 @@ public class ASTPane extends BorderPane {
      * @param ast
      */
     public void update(AST ast) {
+        update(ast, null);
+    }
+    /**
+     * Updates the panes, marking the nodes that have an error in the annotations
+     * @param ast
+     * @param annotations the result of checking the AST, may be null
+     */
+    public void update(AST ast, Annotations annotations) {
+        this.annotations = annotations;
         content.setRoot(astNodeToTreeItem(ast.root));
     }
+    // met een expliciete stack, zodat ook heel diepe bomen getoond kunnen worden
     private TreeItem<ASTNode> astNodeToTreeItem(ASTNode astNode) {
 
-        TreeItem<ASTNode> tvNode = new TreeItem<ASTNode>(astNode);
-        tvNode.setExpanded(true);
+        TreeItem<ASTNode> root = new TreeItem<ASTNode>(astNode);
+        root.setExpanded(true);
 
-        for(ASTNode child : astNode.getChildren()) {
-            tvNode.getChildren().add(astNodeToTreeItem(child));
+        IHANStack<TreeItem<ASTNode>> pending = new HANStack<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            TreeItem<ASTNode> tvNode = pending.pop();
+            for(ASTNode child : tvNode.getValue().getChildren()) {
+                TreeItem<ASTNode> tvChild = new TreeItem<ASTNode>(child);
+                tvChild.setExpanded(true);
+                tvNode.getChildren().add(tvChild);
+                pending.push(tvChild);
+            }
         }
-        return tvNode;
+        return root;
     }
 }
@@ -18,7 +18,7 @@ import nl.han.ica.icss.Pipeline;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 
@@ -123,7 +123,7 @@ public class MainGui extends Application {
                     try {
                         ClassLoader classLoader = MainGui.class.getClassLoader();
                         URL url = classLoader.getResource(level);
-                        inputPane.setText(Resources.toString(url, Charset.defaultCharset()));
+                        inputPane.setText(Resources.toString(url, StandardCharsets.UTF_8));
                     } catch (IOException ioe) {
                         feedbackPane.addLine(ioe.toString());
                     }
@@ -201,7 +201,7 @@ public class MainGui extends Application {
         if (pipeline.isParsed()) {
             feedbackPane.addLine("Parsing succeeded");
         }
-        astPane.update(pipeline.getAST());
+        astPane.update(pipeline.getAST(), pipeline.getAnnotations());
         updateToolbar();
     }
 
@@ -215,7 +215,7 @@ public class MainGui extends Application {
                 feedbackPane.addLine(e);
             }
         }
-        astPane.update(pipeline.getAST());
+        astPane.update(pipeline.getAST(), pipeline.getAnnotations());
         updateToolbar();
     }
 
@@ -226,7 +226,7 @@ public class MainGui extends Application {
        if (pipeline.isTransformed()) {
            feedbackPane.addLine("Transformation succeeded");
        }
-       astPane.update(pipeline.getAST());
+       astPane.update(pipeline.getAST(), pipeline.getAnnotations());
        updateToolbar();
     }
 
@@ -0,0 +1,63 @@
+package nl.han.ica.icss.imports;
+
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Import edges between ICSS files, kept in both directions so the files that depend
+ * on a changed file can be found without scanning every file.
+ */
+public class DependencyGraph {
+
+    private final Map<Path, Set<Path>> imports = new HashMap<>();
+    private final Map<Path, Set<Path>> importedBy = new HashMap<>();
+
+    /**
+     * Replaces the imports of a file.
+     */
+    public synchronized void setImports(Path file, Set<Path> targets) {
+        remove(file);
+        imports.put(file, new LinkedHashSet<>(targets));
+        for (Path target : targets) {
+            importedBy.computeIfAbsent(target, t -> new LinkedHashSet<>()).add(file);
+        }
+    }
+
+    /**
+     * Removes the outgoing edges of a file. Files that import it keep their edges,
+     * so they are still found as dependents when the file comes back.
+     */
+    public synchronized void remove(Path file) {
+        Set<Path> old = imports.remove(file);
+        if (old == null) return;
+        for (Path target : old) {
+            Set<Path> sources = importedBy.get(target);
+            if (sources != null) {
+                sources.remove(file);
+                if (sources.isEmpty()) importedBy.remove(target);
+            }
+        }
+    }
+
+    public synchronized Set<Path> importsOf(Path file) {
+        return new LinkedHashSet<>(imports.getOrDefault(file, Collections.emptySet()));
+    }
+
+    /**
+     * @return every file that imports the given file, directly or through other files
+     */
+    public synchronized Set<Path> dependentsOf(Path file) {
+        Set<Path> result = new LinkedHashSet<>();
+        Deque<Path> todo = new ArrayDeque<>();
+        todo.add(file);
+        while (!todo.isEmpty()) {
+            for (Path source : importedBy.getOrDefault(todo.poll(), Collections.emptySet())) {
+                if (result.add(source)) {
+                    todo.add(source);
+                }
+            }
+        }
+        result.remove(file);
+        return result;
+    }
+}
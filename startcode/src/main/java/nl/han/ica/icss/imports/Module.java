@@ -0,0 +1,38 @@
+package nl.han.ica.icss.imports;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.Literal;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compiled result of one ICSS file, as cached by the {@link ModuleCompiler}.
+ */
+public class Module {
+
+    public final Path file;
+    // hash van de inhoud waarmee dit resultaat gemaakt is
+    public final String hash;
+    public final AST ast;
+    public final List<String> errors;
+    // de globale variabelen na evaluatie, in volgorde van toekenning
+    public final Map<String, Literal> exports;
+    // null als het bestand fouten bevat
+    public final String css;
+
+    public Module(Path file, String hash, AST ast, List<String> errors, Map<String, Literal> exports, String css) {
+        this.file = file;
+        this.hash = hash;
+        this.ast = ast;
+        this.errors = Collections.unmodifiableList(errors);
+        this.exports = Collections.unmodifiableMap(exports);
+        this.css = css;
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+}
@@ -0,0 +1,315 @@
+package nl.han.ica.icss.imports;
+
+import nl.han.ica.icss.ContentHash;
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.DimensionLiteral;
+import nl.han.ica.icss.checker.Annotations;
+import nl.han.ica.icss.diagnostics.Diagnostic;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compiles ICSS files that import each other.
+ *
+ * Every file is compiled on its own and its result is cached; an import adds the global
+ * variables of the imported file in front of the importing file's own statements.
+ * When a file changes, only that file and the files that (transitively) import it are
+ * recompiled. Files whose imports are all up to date are recompiled in parallel.
+ *
+ * Every file is compiled by one thread at a time: a thread that needs a file another thread
+ * is already compiling waits for that result. Two threads that would end up waiting for
+ * each other (files that import each other) report an import cycle instead.
+ */
+public class ModuleCompiler {
+
+    private final Map<Path, Module> modules = new ConcurrentHashMap<>();
+    // bestanden die nu gecompileerd worden, en op welk bestand elke thread wacht; onder het slot van this
+    private final Map<Path, Flight> building = new HashMap<>();
+    private final Map<Thread, Path> waitingFor = new HashMap<>();
+    private final LongAdder builds = new LongAdder();
+    private final DependencyGraph graph = new DependencyGraph();
+    private final ForkJoinPool pool;
+
+    public ModuleCompiler() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ModuleCompiler(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public DependencyGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return the number of times a file was compiled, imports included
+     */
+    public long getBuilds() {
+        return builds.sum();
+    }
+
+    /**
+     * @return the cached result for the file, compiling it (and its imports) when there is none
+     */
+    public Module compile(Path file) throws IOException {
+        file = file.toAbsolutePath().normalize();
+        Module cached = modules.get(file);
+        if (cached != null) return cached;
+        return load(file, new ArrayDeque<>());
+    }
+
+    /**
+     * Drops the cached result of a file, so the next {@link #rebuild(Path)} compiles it again
+     * even when its content did not change.
+     */
+    public void forget(Path file) {
+        modules.remove(file.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Brings the cache up to date after a file was created, changed or deleted.
+     * @return the recompiled files, imports before the files that import them;
+     * empty when the content of the file did not change
+     */
+    public List<Module> rebuild(Path changed) throws IOException {
+        changed = changed.toAbsolutePath().normalize();
+        Set<Path> affected = new LinkedHashSet<>();
+        if (Files.exists(changed)) {
+            Module old = modules.get(changed);
+            if (old != null && old.hash.equals(ContentHash.of(Files.readAllBytes(changed)))) {
+                return new ArrayList<>();
+            }
+            affected.add(changed);
+        } else {
+            modules.remove(changed);
+            graph.remove(changed);
+        }
+        affected.addAll(graph.dependentsOf(changed));
+        for (Path file : affected) {
+            modules.remove(file);
+        }
+
+        // compileer in lagen: een bestand is aan de beurt als geen van zijn imports nog wacht
+        List<Module> rebuilt = new ArrayList<>();
+        Set<Path> waiting = new LinkedHashSet<>(affected);
+        while (!waiting.isEmpty()) {
+            List<Path> ready = new ArrayList<>();
+            for (Path file : waiting) {
+                if (Collections.disjoint(graph.importsOf(file), waiting)) {
+                    ready.add(file);
+                }
+            }
+            if (ready.isEmpty()) {
+                // een cyclus; het compileren meldt de fout zelf
+                ready.addAll(waiting);
+            }
+            waiting.removeAll(ready);
+            rebuilt.addAll(compileAll(ready));
+        }
+        return rebuilt;
+    }
+
+    private List<Module> compileAll(List<Path> files) throws IOException {
+        List<Future<Module>> futures = new ArrayList<>();
+        for (Path file : files) {
+            futures.add(pool.submit(() -> load(file, new ArrayDeque<>())));
+        }
+        List<Module> result = new ArrayList<>();
+        try {
+            for (Future<Module> future : futures) {
+                result.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+        return result;
+    }
+
+    private static final class Flight {
+        final Thread owner = Thread.currentThread();
+        final CompletableFuture<Module> result = new CompletableFuture<>();
+    }
+
+    /*
+     * Compileert het bestand, of wacht op de thread die het al compileert. Geeft null als
+     * wachten een kring van threads zou maken die op elkaar wachten: dan importeren de
+     * bestanden elkaar en is het een import cyclus.
+     */
+    private Module load(Path file, Deque<Path> importing) throws IOException {
+        Flight flight;
+        boolean mine = false;
+        Thread current = Thread.currentThread();
+        synchronized (this) {
+            Module cached = modules.get(file);
+            if (cached != null) return cached;
+            flight = building.get(file);
+            if (flight == null) {
+                flight = new Flight();
+                building.put(file, flight);
+                mine = true;
+            } else {
+                if (waitsFor(flight.owner, current)) return null;
+                waitingFor.put(current, file);
+            }
+        }
+
+        if (!mine) {
+            try {
+                return flight.result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw e;
+            } finally {
+                synchronized (this) {
+                    waitingFor.remove(current);
+                }
+            }
+        }
+
+        try {
+            Module module = build(file, Files.readAllBytes(file), importing);
+            flight.result.complete(module);
+            return module;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            synchronized (this) {
+                building.remove(file, flight);
+            }
+        }
+    }
+
+    // volgt de keten owner -> bestand waarop hij wacht -> eigenaar daarvan, tot hij stopt of bij target uitkomt
+    private boolean waitsFor(Thread owner, Thread target) {
+        Thread thread = owner;
+        for (int steps = 0; thread != null && steps <= waitingFor.size(); steps++) {
+            if (thread == target) return true;
+            Path awaited = waitingFor.get(thread);
+            Flight next = awaited == null ? null : building.get(awaited);
+            thread = next == null ? null : next.owner;
+        }
+        return false;
+    }
+
+    private Module build(Path file, byte[] content, Deque<Path> importing) throws IOException {
+        builds.increment();
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(new String(content, StandardCharsets.UTF_8));
+
+        AST ast = pipeline.getAST();
+        // fouten van het linken staan naast de boom, zodat de gecachte boom schoon blijft
+        Annotations linking = new Annotations();
+        graph.setImports(file, link(file, ast, pipeline, linking, importing));
+
+        String css = null;
+        if (pipeline.isParsed() && pipeline.check(linking) && pipeline.getDiagnostics().isEmpty()) {
+            pipeline.transform();
+            css = pipeline.generate();
+            // de exports komen uit de getransformeerde boom, de bron blijft ongewijzigd
+            ast = pipeline.getAST();
+        }
+        List<String> errors = new ArrayList<>(pipeline.getErrors());
+
+        Map<String, Literal> exports = new LinkedHashMap<>();
+        if (errors.isEmpty()) {
+            for (ASTNode node : ast.root.body) {
+                if (node instanceof VariableAssignment) {
+                    VariableAssignment assignment = (VariableAssignment) node;
+                    if (assignment.expression instanceof Literal) {
+                        exports.put(assignment.name.name, (Literal) assignment.expression);
+                    }
+                }
+            }
+        }
+
+        Module module = new Module(file, ContentHash.of(content), ast, errors, exports, css);
+        modules.put(file, module);
+        return module;
+    }
+
+    /*
+     * Replaces every import by assignments of the imported variables. Every file gets its own
+     * assignment nodes and copies of the literals, so nothing in one module's tree belongs to
+     * another module.
+     */
+    private Set<Path> link(Path file, AST ast, Pipeline pipeline, Annotations linking, Deque<Path> importing)
+            throws IOException {
+        Set<Path> imports = new LinkedHashSet<>();
+        ArrayList<ASTNode> linked = new ArrayList<>(ast.root.body.size());
+        importing.push(file);
+
+        for (ASTNode node : ast.root.body) {
+            if (!(node instanceof Import)) {
+                linked.add(node);
+                continue;
+            }
+            Import anImport = (Import) node;
+            Path target = file.resolveSibling(anImport.path).normalize();
+            imports.add(target);
+
+            Module imported = null;
+            if (importing.contains(target)) {
+                importError(pipeline, linking, anImport, "Import cycle: '" + anImport.path + "' imports this file");
+            } else if (!Files.exists(target)) {
+                importError(pipeline, linking, anImport, "Imported file '" + anImport.path + "' does not exist");
+            } else {
+                imported = load(target, importing);
+                if (imported == null) {
+                    importError(pipeline, linking, anImport, "Import cycle: '" + anImport.path + "' imports this file");
+                } else if (imported.hasErrors()) {
+                    importError(pipeline, linking, anImport, "Imported file '" + anImport.path + "' has errors");
+                    imported = null;
+                }
+            }
+
+            if (imported == null) {
+                linked.add(anImport);
+                continue;
+            }
+            for (Map.Entry<String, Literal> export : imported.exports.entrySet()) {
+                linked.add((new VariableAssignment())
+                        .addChild(new VariableReference(export.getKey()))
+                        .addChild(copy(export.getValue())));
+            }
+        }
+
+        importing.pop();
+        ast.root.body = linked;
+        return imports;
+    }
+
+    private static Literal copy(Literal literal) {
+        if (literal instanceof DimensionLiteral) {
+            DimensionLiteral dimension = (DimensionLiteral) literal;
+            return DimensionLiteral.of(dimension.unit, dimension.fixed);
+        }
+        if (literal instanceof ColorLiteral) return new ColorLiteral(((ColorLiteral) literal).value);
+        return new BoolLiteral(((BoolLiteral) literal).value);
+    }
+
+    private static void importError(Pipeline pipeline, Annotations linking, Import anImport, String description) {
+        linking.setError(anImport, description);
+        pipeline.getDiagnostics().report(Diagnostic.semantic(anImport, description));
+    }
+}
@@ -0,0 +1,223 @@
+package nl.han.ica.icss.index;
+
+import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.datastructures.IHANStack;
+import nl.han.ica.icss.ast.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index over the top-level statements of a stylesheet, for questions like "which rules
+ * mention .menu", "where is background-color set" and "which rules use LinkColor".
+ *
+ * Lookups are one hash lookup; the returned sets are read-only views in no particular
+ * order, so iterating them costs O(matches). Declarations inside if/else branches count
+ * for the rule that contains them. After an edit, report the changed top-level statement
+ * with {@link #added}, {@link #removed} or {@link #changed}; only that statement is
+ * re-indexed. Not thread-safe.
+ */
+public class StylesheetIndex {
+
+    private final Map<String, Set<Stylerule>> rulesBySelector = new HashMap<>();
+    private final Map<String, Set<Declaration>> declarationsByProperty = new HashMap<>();
+    private final Map<String, Set<Stylerule>> rulesByVariable = new HashMap<>();
+    private final Map<String, Set<VariableAssignment>> assignmentsByVariable = new HashMap<>();
+    private final Map<Declaration, Stylerule> ruleOfDeclaration = new IdentityHashMap<>();
+    // per statement de sleutels waaronder het geïndexeerd is, zodat verwijderen niet hoeft te zoeken
+    private final Map<ASTNode, Keys> indexed = new IdentityHashMap<>();
+
+    private static class Keys {
+        final List<String> selectors = new ArrayList<>();
+        final List<Declaration> declarations = new ArrayList<>();
+        final List<String> properties = new ArrayList<>();
+        // een set, zodat een regel met veel referenties niet per referentie de lijst doorzoekt
+        final Set<String> variables = new LinkedHashSet<>();
+    }
+
+    public StylesheetIndex() { }
+
+    public StylesheetIndex(AST ast) {
+        if (ast != null && ast.root != null) {
+            for (ASTNode statement : ast.root.body) {
+                added(statement);
+            }
+        }
+    }
+
+    public Set<Stylerule> rulesWithSelector(String selector) {
+        return lookup(rulesBySelector, selector);
+    }
+
+    public Set<Declaration> declarationsOf(String property) {
+        return lookup(declarationsByProperty, property);
+    }
+
+    /**
+     * @return the rules that reference the variable anywhere in their body
+     */
+    public Set<Stylerule> rulesUsingVariable(String name) {
+        return lookup(rulesByVariable, name);
+    }
+
+    /**
+     * @return the top-level assignments of the variable
+     */
+    public Set<VariableAssignment> assignmentsOf(String name) {
+        return lookup(assignmentsByVariable, name);
+    }
+
+    /**
+     * @return the rule that contains the declaration, or null when it is not indexed
+     */
+    public Stylerule ruleOf(Declaration declaration) {
+        return ruleOfDeclaration.get(declaration);
+    }
+
+    public boolean contains(ASTNode statement) {
+        return indexed.containsKey(statement);
+    }
+
+    /**
+     * Indexes a top-level statement that was added to the stylesheet.
+     */
+    public void added(ASTNode statement) {
+        if (statement == null || indexed.containsKey(statement)) return;
+        Keys keys = new Keys();
+
+        if (statement instanceof Stylerule) {
+            Stylerule rule = (Stylerule) statement;
+            for (Selector selector : rule.selectors) {
+                keys.selectors.add(selector.toString());
+            }
+            collect(rule.body, keys);
+            for (String selector : keys.selectors) {
+                add(rulesBySelector, selector, rule);
+            }
+            for (int i = 0; i < keys.declarations.size(); i++) {
+                add(declarationsByProperty, keys.properties.get(i), keys.declarations.get(i));
+                ruleOfDeclaration.put(keys.declarations.get(i), rule);
+            }
+            for (String variable : keys.variables) {
+                add(rulesByVariable, variable, rule);
+            }
+        } else if (statement instanceof VariableAssignment) {
+            VariableAssignment assignment = (VariableAssignment) statement;
+            if (assignment.name == null) return;
+            keys.variables.add(assignment.name.name);
+            add(assignmentsByVariable, assignment.name.name, assignment);
+        } else {
+            return;
+        }
+        indexed.put(statement, keys);
+    }
+
+    /**
+     * Removes a top-level statement that was removed from the stylesheet. It is removed
+     * under the keys it had when it was indexed, so it may have been edited since.
+     */
+    public void removed(ASTNode statement) {
+        Keys keys = indexed.remove(statement);
+        if (keys == null) return;
+
+        if (statement instanceof Stylerule) {
+            Stylerule rule = (Stylerule) statement;
+            for (String selector : keys.selectors) {
+                remove(rulesBySelector, selector, rule);
+            }
+            for (int i = 0; i < keys.declarations.size(); i++) {
+                remove(declarationsByProperty, keys.properties.get(i), keys.declarations.get(i));
+                ruleOfDeclaration.remove(keys.declarations.get(i));
+            }
+            for (String variable : keys.variables) {
+                remove(rulesByVariable, variable, rule);
+            }
+        } else {
+            for (String variable : keys.variables) {
+                remove(assignmentsByVariable, variable, (VariableAssignment) statement);
+            }
+        }
+    }
+
+    /**
+     * Re-indexes a top-level statement that was edited in place.
+     */
+    public void changed(ASTNode statement) {
+        removed(statement);
+        added(statement);
+    }
+
+    private static void collect(List<ASTNode> body, Keys keys) {
+        // geneste if/else bodies gaan als iterator op een expliciete stack, net als de expressies
+        IHANStack<Iterator<ASTNode>> bodies = new HANStack<>();
+        bodies.push(body.iterator());
+        while (!bodies.isEmpty()) {
+            Iterator<ASTNode> remaining = bodies.peek();
+            if (!remaining.hasNext()) {
+                bodies.pop();
+                continue;
+            }
+            ASTNode node = remaining.next();
+            if (node instanceof Declaration) {
+                Declaration declaration = (Declaration) node;
+                if (declaration.property != null) {
+                    keys.declarations.add(declaration);
+                    keys.properties.add(declaration.property.name);
+                }
+                collectVariables(declaration.expression, keys);
+            } else if (node instanceof VariableAssignment) {
+                collectVariables(((VariableAssignment) node).expression, keys);
+            } else if (node instanceof IfClause) {
+                IfClause ifc = (IfClause) node;
+                collectVariables(ifc.conditionalExpression, keys);
+                // de else komt na de if-tak aan de beurt
+                if (ifc.elseClause != null) {
+                    bodies.push(ifc.elseClause.body.iterator());
+                }
+                bodies.push(ifc.body.iterator());
+            }
+        }
+    }
+
+    private static void collectVariables(ASTNode expression, Keys keys) {
+        if (expression == null) return;
+        // expliciete stack, lange rekenketens zijn diepe bomen
+        IHANStack<ASTNode> pending = new HANStack<>();
+        pending.push(expression);
+        while (!pending.isEmpty()) {
+            ASTNode node = pending.pop();
+            if (node instanceof VariableReference) {
+                String name = ((VariableReference) node).name;
+                keys.variables.add(name);
+                continue;
+            }
+            List<ASTNode> children = node.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                if (children.get(i) != null) pending.push(children.get(i));
+            }
+        }
+    }
+
+    private static <T> Set<T> lookup(Map<String, Set<T>> map, String key) {
+        Set<T> values = map.get(key);
+        return values == null ? Collections.emptySet() : Collections.unmodifiableSet(values);
+    }
+
+    private static <T> void add(Map<String, Set<T>> map, String key, T value) {
+        map.computeIfAbsent(key, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(value);
+    }
+
+    private static <T> void remove(Map<String, Set<T>> map, String key, T value) {
+        Set<T> values = map.get(key);
+        if (values == null) return;
+        values.remove(value);
+        if (values.isEmpty()) map.remove(key);
+    }
+}
@@ -9,6 +9,9 @@ import nl.han.ica.icss.ast.selectors.ClassSelector;
 import nl.han.ica.icss.ast.selectors.IdSelector;
 import nl.han.ica.icss.ast.selectors.TagSelector;
 
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
 import java.util.ArrayList;
 
 public class ASTListener extends ICSSBaseListener {
@@ -31,25 +34,39 @@ public class ASTListener extends ICSSBaseListener {
         return ast;
     }
 
-    private void normalizeBooleanReferences(ASTNode node) {
-        if (node == null) return;
-        ArrayList<ASTNode> children = node.getChildren();
-        for (int i = 0; i < children.size(); i++) {
-            ASTNode child = children.get(i);
-            // recurse first
-            normalizeBooleanReferences(child);
-            if (child instanceof VariableReference) {
-                String name = ((VariableReference) child).name;
-                if (name != null && (name.equalsIgnoreCase("true") || name.equalsIgnoreCase("false"))) {
-                    BoolLiteral bool = new BoolLiteral(name.equalsIgnoreCase("true"));
-                    node.removeChild(child);
-                    node.addChild(bool);
-                    children.set(i, bool);
+    // vervangt true/false referenties door literals; met een expliciete stack in plaats van recursie
+    private void normalizeBooleanReferences(ASTNode root) {
+        if (root == null) return;
+        IHANStack<ASTNode> pending = new HANStack<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            ASTNode node = pending.pop();
+            ArrayList<ASTNode> children = node.getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                ASTNode child = children.get(i);
+                if (child == null) continue;
+                if (child instanceof VariableReference) {
+                    String name = ((VariableReference) child).name;
+                    if (name != null && (name.equalsIgnoreCase("true") || name.equalsIgnoreCase("false"))) {
+                        BoolLiteral bool = new BoolLiteral(name.equalsIgnoreCase("true"));
+                        bool.setPosition(child.getLine(), child.getColumn());
+                        node.removeChild(child);
+                        node.addChild(bool);
+                        children.set(i, bool);
+                    }
+                } else {
+                    pending.push(child);
                 }
             }
         }
     }
 
+    // onthoudt waar in de bron een node begint, voor foutmeldingen
+    private static <T extends ASTNode> T at(T node, Token token) {
+        node.setPosition(token.getLine(), token.getCharPositionInLine() + 1);
+        return node;
+    }
+
     private void attachToParent(ASTNode child) {
         try {
             ASTNode parent = currentContainer.peek();
@@ -71,9 +88,17 @@ public class ASTListener extends ICSSBaseListener {
         try { currentContainer.pop(); } catch (Exception ignored) { }
     }
 
+    @Override
+    public void enterImportStatement(ICSSParser.ImportStatementContext ctx) {
+        if (ctx.STRING() == null) return;
+        // de aanhalingstekens horen niet bij het pad
+        String quoted = ctx.STRING().getText();
+        attachToParent(at(new Import(quoted.substring(1, quoted.length() - 1)), ctx.getStart()));
+    }
+
     @Override
     public void enterStyleRule(ICSSParser.StyleRuleContext ctx) {
-        Stylerule rule = new Stylerule();
+        Stylerule rule = at(new Stylerule(), ctx.getStart());
         attachToParent(rule);
         currentContainer.push(rule);
     }
@@ -86,7 +111,7 @@ public class ASTListener extends ICSSBaseListener {
     // --- Level 2/3: if/else and blocks ---
     @Override
     public void enterIfStatement(ICSSParser.IfStatementContext ctx) {
-        IfClause ifc = new IfClause();
+        IfClause ifc = at(new IfClause(), ctx.getStart());
         attachToParent(ifc);
         currentContainer.push(ifc);
     }
@@ -121,7 +146,7 @@ public class ASTListener extends ICSSBaseListener {
             }
             // in grammar the first block is child index 4, the else-block (if present) is child index 6
             if (idx == 6) {
-                ElseClause elseC = new ElseClause();
+                ElseClause elseC = at(new ElseClause(), ctx.getStart());
                 attachToParent(elseC);
                 currentContainer.push(elseC);
             }
@@ -143,22 +168,22 @@ public class ASTListener extends ICSSBaseListener {
         String txt = ctx.getText();
         if (txt != null) txt = txt.toLowerCase();
         if (txt.startsWith(".")) {
-            attachToParent(new ClassSelector(txt));
+            attachToParent(at(new ClassSelector(txt), ctx.getStart()));
         } else if (txt.startsWith("#")) {
-            attachToParent(new IdSelector(txt));
+            attachToParent(at(new IdSelector(txt), ctx.getStart()));
         } else {
-            attachToParent(new TagSelector(txt));
+            attachToParent(at(new TagSelector(txt), ctx.getStart()));
         }
     }
 
     @Override
     public void enterDeclaration(ICSSParser.DeclarationContext ctx) {
-        Declaration decl = new Declaration();
+        Declaration decl = at(new Declaration(), ctx.getStart());
         attachToParent(decl);
         currentContainer.push(decl);
 
         if (ctx.LOWER_IDENT() != null) {
-            PropertyName prop = new PropertyName(ctx.LOWER_IDENT().getText());
+            PropertyName prop = at(new PropertyName(ctx.LOWER_IDENT().getText()), ctx.LOWER_IDENT().getSymbol());
             attachToParent(prop);
         }
     }
@@ -182,15 +207,15 @@ public class ASTListener extends ICSSBaseListener {
 
     @Override
     public void enterVariableAssignment(ICSSParser.VariableAssignmentContext ctx) {
-        VariableAssignment varAssign = new VariableAssignment();
+        VariableAssignment varAssign = at(new VariableAssignment(), ctx.getStart());
         attachToParent(varAssign);
         currentContainer.push(varAssign);
 
         if (ctx.LOWER_IDENT() != null) {
-            VariableReference name = new VariableReference(ctx.LOWER_IDENT().getText());
+            VariableReference name = at(new VariableReference(ctx.LOWER_IDENT().getText()), ctx.LOWER_IDENT().getSymbol());
             attachToParent(name);
         } else if (ctx.CAPITAL_IDENT() != null) {
-            VariableReference name = new VariableReference(ctx.CAPITAL_IDENT().getText());
+            VariableReference name = at(new VariableReference(ctx.CAPITAL_IDENT().getText()), ctx.CAPITAL_IDENT().getSymbol());
             attachToParent(name);
         }
     }
@@ -225,16 +250,11 @@ public class ASTListener extends ICSSBaseListener {
             node = new BoolLiteral(true);
         } else if (txt.equalsIgnoreCase("false")) {
             node = new BoolLiteral(false);
-        } else if (txt.matches("^#[0-9a-fA-F]{6}$")) {
+        } else if (txt.matches("^#[0-9a-fA-F]{6}([0-9a-fA-F]{2})?$")) {
             node = new ColorLiteral(txt);
-        } else if (txt.endsWith("px")) {
-            String num = txt.substring(0, txt.length() - 2);
-            try { node = new PixelLiteral(Integer.parseInt(num)); } catch (NumberFormatException ignored) { }
-        } else if (txt.endsWith("%")) {
-            String num = txt.substring(0, txt.length() - 1);
-            try { node = new PercentageLiteral(Integer.parseInt(num)); } catch (NumberFormatException ignored) { }
-        } else if (txt.matches("^[0-9]+$")) {
-            try { node = new ScalarLiteral(Integer.parseInt(txt)); } catch (NumberFormatException ignored) { }
+        } else if (!txt.isEmpty() && Character.isDigit(txt.charAt(0))) {
+            // px, %, em, rem of een los getal
+            try { node = DimensionLiteral.parse(txt); } catch (NumberFormatException ignored) { }
         } else if (txt.startsWith(".")) {
             node = new ClassSelector(txt.toLowerCase());
         } else if (txt.startsWith("#")) {
@@ -245,7 +265,7 @@ public class ASTListener extends ICSSBaseListener {
             node = new PropertyName(txt);
         }
 
-        if (node != null) exprStack.push(node);
+        if (node != null) exprStack.push(at(node, ctx.getStart()));
     }
 
     @Override
@@ -265,7 +285,7 @@ public class ASTListener extends ICSSBaseListener {
         ASTNode result = parts[0];
         for (int i = 0; i < count - 1; i++) {
             String opText = ctx.getChild(2 * i + 1).getText();
-            MultiplyOperation mul = new MultiplyOperation();
+            MultiplyOperation mul = at(new MultiplyOperation(), ((TerminalNode) ctx.getChild(2 * i + 1)).getSymbol());
             mul.addChild((ASTNode) result);
             mul.addChild((ASTNode) parts[i + 1]);
             result = mul;
@@ -289,12 +309,12 @@ public class ASTListener extends ICSSBaseListener {
         for (int i = 0; i < count - 1; i++) {
             String opText = ctx.getChild(2 * i + 1).getText();
             if (opText.equals("+")) {
-                AddOperation add = new AddOperation();
+                AddOperation add = at(new AddOperation(), ((TerminalNode) ctx.getChild(2 * i + 1)).getSymbol());
                 add.addChild((ASTNode) result);
                 add.addChild((ASTNode) parts[i + 1]);
                 result = add;
             } else {
-                SubtractOperation sub = new SubtractOperation();
+                SubtractOperation sub = at(new SubtractOperation(), ((TerminalNode) ctx.getChild(2 * i + 1)).getSymbol());
                 sub.addChild((ASTNode) result);
                 sub.addChild((ASTNode) parts[i + 1]);
                 result = sub;
@@ -0,0 +1,39 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.CancellationToken;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.RecognitionException;
+
+/**
+ * The default ANTLR error strategy, except that the parse stops with a
+ * {@link nl.han.ica.icss.CompilationCancelledException} once the token is cancelled.
+ * The parser calls {@link #sync(Parser)} before every loop iteration and sub-rule, so
+ * this is also checked during a long parse without syntax errors.
+ */
+public class CancellingErrorStrategy extends DefaultErrorStrategy {
+
+    // niet bij elke sync de klok lezen
+    private static final int CHECK_INTERVAL = 256;
+
+    private final CancellationToken cancellation;
+    private int syncs = 0;
+
+    public CancellingErrorStrategy(CancellationToken cancellation) {
+        this.cancellation = cancellation;
+    }
+
+    @Override
+    public void sync(Parser recognizer) throws RecognitionException {
+        if (++syncs % CHECK_INTERVAL == 0) {
+            cancellation.throwIfCancelled();
+        }
+        super.sync(recognizer);
+    }
+
+    @Override
+    public void recover(Parser recognizer, RecognitionException e) {
+        cancellation.throwIfCancelled();
+        super.recover(recognizer, e);
+    }
+}
@@ -0,0 +1,76 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CodePointBuffer;
+import org.antlr.v4.runtime.CodePointCharStream;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Creates ANTLR char streams from UTF-8 files without building a String first.
+ *
+ * The file is memory-mapped and decoded in small pieces straight into ANTLR's code point
+ * buffer, so apart from the page cache only the code point buffer holds a copy of the input.
+ */
+public final class MappedCharStreams {
+
+    // grootte van één mapping; grotere bestanden worden in delen gemapt
+    private static final long MAPPING_SIZE = 1L << 30;
+    private static final int DECODE_BUFFER_SIZE = 64 * 1024;
+
+    private MappedCharStreams() { }
+
+    public static CharStream fromPath(Path file) throws IOException {
+        return fromPath(file, MAPPING_SIZE);
+    }
+
+    static CharStream fromPath(Path file, long mappingSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to parse: " + file);
+            }
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            // er zijn nooit meer code points dan bytes
+            CodePointBuffer.Builder codePoints = CodePointBuffer.builder((int) size);
+            CharBuffer chars = CharBuffer.allocate(DECODE_BUFFER_SIZE);
+
+            long position = 0;
+            do {
+                long length = Math.min(mappingSize, size - position);
+                boolean last = position + length == size;
+                MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                CoderResult result;
+                do {
+                    result = decoder.decode(bytes, chars, last);
+                    chars.flip();
+                    codePoints.append(chars);
+                    chars.compact();
+                } while (result.isOverflow());
+                // een teken dat over de grens van de mapping loopt komt in de volgende mapping mee
+                position += length - bytes.remaining();
+            } while (position < size);
+
+            while (decoder.flush(chars).isOverflow()) {
+                chars.flip();
+                codePoints.append(chars);
+                chars.compact();
+            }
+            chars.flip();
+            codePoints.append(chars);
+
+            return CodePointCharStream.fromBuffer(codePoints.build(), file.toString());
+        }
+    }
+}
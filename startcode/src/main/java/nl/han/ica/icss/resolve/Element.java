@@ -0,0 +1,20 @@
+package nl.han.ica.icss.resolve;
+
+import java.util.List;
+
+/**
+ * An element to resolve a style for: its tag, its id (may be null) and its classes.
+ * Id and classes are given without the '#' and '.' prefixes.
+ */
+public final class Element {
+
+    public final String tag;
+    public final String id;
+    public final List<String> classes;
+
+    public Element(String tag, String id, String... classes) {
+        this.tag = tag;
+        this.id = id;
+        this.classes = List.of(classes);
+    }
+}
@@ -0,0 +1,70 @@
+package nl.han.ica.icss.resolve;
+
+import nl.han.ica.icss.Pipeline;
+
+import java.util.Random;
+
+/**
+ * Throughput benchmark for the style resolver.
+ *
+ * Usage: ResolveBenchmark [rules] [seconds]
+ * Compiles a generated stylesheet with the given number of rules (default 5 000) and
+ * resolves random elements with a tag, an id and two classes and reads their width for the
+ * given time (default 5 s, after a warm-up of the same length), then prints the lookups per second.
+ */
+public class ResolveBenchmark {
+
+    private static final int ELEMENTS = 4096;
+
+    public static void main(String[] args) {
+        int rules = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        long nanos = (long) ((args.length > 1 ? Double.parseDouble(args[1]) : 5) * 1e9);
+
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(stylesheet(rules));
+        if (!pipeline.check()) throw new IllegalStateException(pipeline.getErrors().toString());
+        pipeline.transform();
+        StyleResolver resolver = new StyleResolver(pipeline.getAST());
+
+        Random random = new Random(42);
+        Element[] elements = new Element[ELEMENTS];
+        for (int i = 0; i < ELEMENTS; i++) {
+            elements[i] = new Element(TAGS[random.nextInt(TAGS.length)], "id" + random.nextInt(rules / 10 + 1),
+                    "c" + random.nextInt(rules / 4 + 1), "c" + random.nextInt(rules / 4 + 1));
+        }
+
+        run(resolver, elements, nanos);
+        long lookups = run(resolver, elements, nanos);
+        System.out.printf("%d rules: %.2f million lookups/s%n", rules, lookups / (nanos / 1e9) / 1e6);
+    }
+
+    private static final String[] TAGS = { "p", "a", "div", "span", "li", "h1" };
+
+    private static long run(StyleResolver resolver, Element[] elements, long nanos) {
+        long lookups = 0;
+        int sink = 0;
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 1024; i++) {
+                sink += resolver.resolve(elements[(int) (lookups++ & (ELEMENTS - 1))]).get("width") == null ? 0 : 1;
+            }
+        }
+        if (sink == 42) System.out.println();
+        return lookups;
+    }
+
+    static String stylesheet(int rules) {
+        StringBuilder input = new StringBuilder("Base := 10px;\n");
+        for (int i = 0; i < rules; i++) {
+            String selector;
+            switch (i % 3) {
+                case 0: selector = "#id" + (i / 10); break;
+                case 1: selector = ".c" + (i / 4); break;
+                default: selector = TAGS[i % TAGS.length]; break;
+            }
+            input.append(selector).append(" { width: Base + ").append(i % 100).append("px; color: #")
+                    .append(String.format("%06x", i)).append("; }\n");
+        }
+        return input.toString();
+    }
+}
@@ -0,0 +1,42 @@
+package nl.han.ica.icss.resolve;
+
+import nl.han.ica.icss.ast.Expression;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The winning value per property for one element.
+ */
+public final class ResolvedStyle {
+
+    private final String[] propertyNames;
+    // de index van elke naam in propertyNames; van de resolver, dus niet per element gebouwd
+    private final Map<String, Integer> propertyIds;
+    private final Expression[] values;
+
+    ResolvedStyle(String[] propertyNames, Map<String, Integer> propertyIds, Expression[] values) {
+        this.propertyNames = propertyNames;
+        this.propertyIds = propertyIds;
+        this.values = values;
+    }
+
+    /**
+     * @return the winning value, or null when no rule sets the property for this element
+     */
+    public Expression get(String property) {
+        Integer id = propertyIds.get(property);
+        return id == null ? null : values[id];
+    }
+
+    /**
+     * @return the set properties and their values, in the order the properties first appear in the stylesheet
+     */
+    public Map<String, Expression> toMap() {
+        Map<String, Expression> map = new LinkedHashMap<>();
+        for (int i = 0; i < propertyNames.length; i++) {
+            if (values[i] != null) map.put(propertyNames[i], values[i]);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,181 @@
+package nl.han.ica.icss.resolve;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes which declarations of a transformed stylesheet apply to an element.
+ *
+ * Like a browser, the rules are put in buckets by the id, class or tag of their selectors,
+ * so resolving an element only looks at the buckets for its own id, classes and tag. Among
+ * the matching declarations for a property the one with the highest specificity wins
+ * (id over class over tag), and between equal specificity the last one in the source.
+ * All rules in a bucket have the same specificity, so each bucket is reduced to its winning
+ * declaration per property when the resolver is built. Built once; resolving is thread-safe.
+ */
+public class StyleResolver {
+
+    // specificiteit: ids tellen zwaarder dan classes, classes zwaarder dan tags
+    static final int ID_SPECIFICITY = 1 << 16;
+    static final int CLASS_SPECIFICITY = 1 << 8;
+    static final int TAG_SPECIFICITY = 1;
+
+    private static final Candidate NONE = new Candidate(new int[0], new Expression[0], new long[0]);
+
+    /*
+     * The declarations of one rule, reached through one of its selectors, or after building
+     * the winning declarations of a whole bucket. The rank of a declaration is the specificity
+     * of the selector in the high bits and its position in the source in the low bits, so the
+     * highest rank wins.
+     */
+    private static final class Candidate {
+        final int[] properties;
+        final Expression[] values;
+        final long[] ranks;
+
+        Candidate(int[] properties, Expression[] values, long[] ranks) {
+            this.properties = properties;
+            this.values = values;
+            this.ranks = ranks;
+        }
+    }
+
+    private final Map<String, Candidate> byId;
+    private final Map<String, Candidate> byClass;
+    private final Map<String, Candidate> byTag;
+    private final String[] propertyNames;
+    // index van elke property in propertyNames, gedeeld door alle ResolvedStyles
+    private final Map<String, Integer> propertyIds;
+
+    public StyleResolver(AST ast) {
+        Map<String, List<Candidate>> ids = new HashMap<>();
+        Map<String, List<Candidate>> classes = new HashMap<>();
+        Map<String, List<Candidate>> tags = new HashMap<>();
+        Map<String, Integer> propertyIds = new HashMap<>();
+        List<String> names = new ArrayList<>();
+
+        int sequence = 0;
+        if (ast != null && ast.root != null) {
+            for (ASTNode node : ast.root.body) {
+                if (!(node instanceof Stylerule)) continue;
+                Stylerule rule = (Stylerule) node;
+
+                List<Declaration> declarations = new ArrayList<>();
+                for (ASTNode child : rule.body) {
+                    if (child instanceof Declaration && ((Declaration) child).property != null) {
+                        declarations.add((Declaration) child);
+                    }
+                }
+                int[] properties = new int[declarations.size()];
+                Expression[] values = new Expression[declarations.size()];
+                int[] positions = new int[declarations.size()];
+                for (int i = 0; i < properties.length; i++) {
+                    String name = declarations.get(i).property.name;
+                    Integer id = propertyIds.get(name);
+                    if (id == null) {
+                        id = names.size();
+                        propertyIds.put(name, id);
+                        names.add(name);
+                    }
+                    properties[i] = id;
+                    values[i] = declarations.get(i).expression;
+                    positions[i] = sequence++;
+                }
+
+                for (Selector selector : rule.selectors) {
+                    if (selector instanceof IdSelector) {
+                        add(ids, strip(((IdSelector) selector).id, '#'), properties, values, positions, ID_SPECIFICITY);
+                    } else if (selector instanceof ClassSelector) {
+                        add(classes, strip(((ClassSelector) selector).cls, '.'), properties, values, positions, CLASS_SPECIFICITY);
+                    } else if (selector instanceof TagSelector) {
+                        add(tags, ((TagSelector) selector).tag, properties, values, positions, TAG_SPECIFICITY);
+                    }
+                }
+            }
+        }
+        byId = freeze(ids);
+        byClass = freeze(classes);
+        byTag = freeze(tags);
+        propertyNames = names.toArray(new String[0]);
+        this.propertyIds = Map.copyOf(propertyIds);
+    }
+
+    public ResolvedStyle resolve(Element element) {
+        long[] ranks = new long[propertyNames.length];
+        Expression[] winners = new Expression[propertyNames.length];
+
+        if (element.id != null) {
+            apply(byId.getOrDefault(element.id, NONE), ranks, winners);
+        }
+        for (String cls : element.classes) {
+            apply(byClass.getOrDefault(cls, NONE), ranks, winners);
+        }
+        if (element.tag != null) {
+            apply(byTag.getOrDefault(element.tag, NONE), ranks, winners);
+        }
+        return new ResolvedStyle(propertyNames, propertyIds, winners);
+    }
+
+    private static void apply(Candidate candidate, long[] ranks, Expression[] winners) {
+        for (int i = 0; i < candidate.properties.length; i++) {
+            int property = candidate.properties[i];
+            // rang 0 betekent nog niets gevonden, echte rangen zijn altijd groter
+            if (candidate.ranks[i] > ranks[property]) {
+                ranks[property] = candidate.ranks[i];
+                winners[property] = candidate.values[i];
+            }
+        }
+    }
+
+    private static void add(Map<String, List<Candidate>> buckets, String key, int[] properties,
+                            Expression[] values, int[] positions, int specificity) {
+        long[] ranks = new long[properties.length];
+        for (int i = 0; i < ranks.length; i++) {
+            ranks[i] = ((long) specificity << 32) | positions[i];
+        }
+        buckets.computeIfAbsent(key, k -> new ArrayList<>()).add(new Candidate(properties, values, ranks));
+    }
+
+    /*
+     * Voegt de regels van elke bucket samen tot één Candidate met per property de hoogste
+     * rang. De hoogste rang over buckets heen blijft zo gelijk, maar een element met een
+     * veelgebruikte tag loopt niet meer langs elke regel voor die tag.
+     */
+    private static Map<String, Candidate> freeze(Map<String, List<Candidate>> buckets) {
+        Map<String, Candidate> frozen = new HashMap<>();
+        for (Map.Entry<String, List<Candidate>> bucket : buckets.entrySet()) {
+            Map<Integer, Integer> slots = new HashMap<>();
+            List<Integer> properties = new ArrayList<>();
+            List<Expression> values = new ArrayList<>();
+            List<Long> ranks = new ArrayList<>();
+            for (Candidate candidate : bucket.getValue()) {
+                for (int i = 0; i < candidate.properties.length; i++) {
+                    Integer slot = slots.get(candidate.properties[i]);
+                    if (slot == null) {
+                        slots.put(candidate.properties[i], properties.size());
+                        properties.add(candidate.properties[i]);
+                        values.add(candidate.values[i]);
+                        ranks.add(candidate.ranks[i]);
+                    } else if (candidate.ranks[i] > ranks.get(slot)) {
+                        values.set(slot, candidate.values[i]);
+                        ranks.set(slot, candidate.ranks[i]);
+                    }
+                }
+            }
+            frozen.put(bucket.getKey(), new Candidate(properties.stream().mapToInt(Integer::intValue).toArray(),
+                    values.toArray(new Expression[0]), ranks.stream().mapToLong(Long::longValue).toArray()));
+        }
+        return frozen;
+    }
+
+    private static String strip(String selector, char prefix) {
+        return !selector.isEmpty() && selector.charAt(0) == prefix ? selector.substring(1) : selector;
+    }
+}
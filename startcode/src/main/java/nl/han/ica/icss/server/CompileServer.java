@@ -0,0 +1,256 @@
+package nl.han.ica.icss.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import nl.han.ica.icss.ContentHash;
+import nl.han.ica.icss.compiler.CompilationResult;
+import nl.han.ica.icss.compiler.CompileOptions;
+import nl.han.ica.icss.compiler.SingleFlightCompiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-running HTTP server that compiles ICSS to CSS.
+ *
+ * POST /compile with the ICSS source as body. Responses:
+ * 200 with the CSS and a strong ETag, 304 when If-None-Match matches that ETag,
+ * 413 when the body is larger than {@link #setMaxBodyBytes(int)} allows, 422 with the
+ * pipeline errors as JSON, 500 when the compile itself failed, and 503 when the request
+ * queue is full. The server listens on the loopback address unless another address is given.
+ */
+public class CompileServer {
+
+    public static final String PATH = "/compile";
+    public static final int DEFAULT_MAX_BODY_BYTES = 1 << 20;
+
+    private static final System.Logger LOG = System.getLogger(CompileServer.class.getName());
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers;
+    // gedeeld door alle workers; gelijke verzoeken die tegelijk binnenkomen delen één compile
+    private final SingleFlightCompiler compiler;
+    // grootste body die een worker in het geheugen leest
+    private volatile int maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+
+    /**
+     * Listens on the loopback address only.
+     * @param port the port to listen on, 0 picks a free port
+     * @param threads number of compile threads
+     * @param queueCapacity number of requests that may wait for a compile thread
+     */
+    public CompileServer(int port, int threads, int queueCapacity) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), threads, queueCapacity);
+    }
+
+    /**
+     * @param address the address and port to listen on, e.g. the wildcard address to accept other hosts
+     */
+    public CompileServer(InetSocketAddress address, int threads, int queueCapacity) throws IOException {
+        this(address, threads, queueCapacity, new SingleFlightCompiler());
+    }
+
+    CompileServer(InetSocketAddress address, int threads, int queueCapacity, SingleFlightCompiler compiler)
+            throws IOException {
+        this.compiler = compiler;
+        workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+        server = HttpServer.create(address, 0);
+        // het accepteren gebeurt op de dispatcher thread, compileren op de workers
+        server.createContext(PATH, this::admit);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    public SingleFlightCompiler getCompiler() {
+        return compiler;
+    }
+
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    /**
+     * Sets the largest request body that is compiled; larger bodies get a 413.
+     * @param maxBodyBytes at least 1 and less than Integer.MAX_VALUE
+     */
+    public void setMaxBodyBytes(int maxBodyBytes) {
+        if (maxBodyBytes < 1 || maxBodyBytes == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Maximum body size out of range: " + maxBodyBytes);
+        }
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void admit(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            send(exchange, 405, "text/plain", "Method not allowed");
+            return;
+        }
+        try {
+            workers.execute(() -> handle(exchange));
+        } catch (RejectedExecutionException e) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            send(exchange, 503, "text/plain", "Server busy");
+        }
+    }
+
+    private void handle(HttpExchange exchange) {
+        try {
+            byte[] body = readBody(exchange, maxBodyBytes);
+            if (body == null) {
+                send(exchange, 413, "text/plain", "Request body larger than " + maxBodyBytes + " bytes");
+                return;
+            }
+
+            // de output hangt alleen van de input af, dus de hash van de input is een sterke ETag
+            String hash = ContentHash.of(body);
+            String etag = "\"" + hash + "\"";
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            // alleen een geslaagde compile krijgt een ETag, dus bij die ETag hoeft er niet gecompileerd te worden
+            if (etagMatches(ifNoneMatch, etag)) {
+                notModified(exchange, etag);
+                return;
+            }
+
+            CompilationResult result = compiler.compile(hash, new String(body, StandardCharsets.UTF_8),
+                    CompileOptions.DEFAULT);
+            if (!result.isSuccessful()) {
+                send(exchange, 422, "application/json", errorsToJson(result.getErrors()));
+            } else if (etagMatches(ifNoneMatch, "*")) {
+                // * betekent "als er een representatie is", en die is er alleen na een geslaagde compile
+                notModified(exchange, etag);
+            } else {
+                exchange.getResponseHeaders().set("ETag", etag);
+                send(exchange, 200, "text/css; charset=utf-8", result.css);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.log(System.Logger.Level.ERROR, "Compile request failed", e);
+            fail(exchange);
+        }
+    }
+
+    /*
+     * Leest de body, of geeft null als die groter is dan max. Een Content-Length die te groot is
+     * wordt meteen geweigerd; zonder (chunked) wordt hoogstens één byte meer dan max gelezen.
+     */
+    private static byte[] readBody(HttpExchange exchange, int max) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null) {
+            try {
+                if (Long.parseLong(length.trim()) > max) return null;
+            } catch (NumberFormatException e) {
+                // de HttpServer zelf weigert een ongeldige lengte al, dan toch begrensd lezen
+            }
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(max + 1);
+            return body.length > max ? null : body;
+        }
+    }
+
+    private static void notModified(HttpExchange exchange, String etag) throws IOException {
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+    }
+
+    // een 500 als de headers nog niet verstuurd zijn, anders kan alleen de verbinding dicht
+    private static void fail(HttpExchange exchange) {
+        try {
+            if (exchange.getResponseCode() == -1) {
+                exchange.getResponseHeaders().remove("ETag");
+                send(exchange, 500, "text/plain", "Internal server error");
+            }
+        } catch (IOException e) {
+            LOG.log(System.Logger.Level.DEBUG, "Could not send error response", e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            if (candidate.trim().equals(etag)) return true;
+        }
+        return false;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    static String errorsToJson(List<String> errors) {
+        StringBuilder json = new StringBuilder("{\"errors\":[");
+        for (int i = 0; i < errors.size(); i++) {
+            if (i > 0) json.append(',');
+            quote(json, errors.get(i));
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void quote(StringBuilder json, String text) {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int queue = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        // bijvoorbeeld 0.0.0.0 om verzoeken van andere machines aan te nemen
+        InetAddress host = args.length > 3 ? InetAddress.getByName(args[3]) : InetAddress.getLoopbackAddress();
+        int maxBody = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_MAX_BODY_BYTES;
+
+        CompileServer server = new CompileServer(new InetSocketAddress(host, port), threads, queue);
+        server.setMaxBodyBytes(maxBody);
+        server.start();
+        System.out.println("ICSS compile server listening on http://" + host.getHostAddress() + ":" + server.getPort() + PATH);
+    }
+}
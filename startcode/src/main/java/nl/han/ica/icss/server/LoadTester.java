@@ -0,0 +1,122 @@
+package nl.han.ica.icss.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Load-test harness for the compile server.
+ *
+ * Usage: LoadTester [concurrency] [requests] [input.icss] [url]
+ * Without a url an in-process server is started on a free localhost port.
+ * Every second request sends the ETag of a previous response, so both the
+ * compile path and the 304 path are measured.
+ */
+public class LoadTester {
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        // zonder requests is er geen latency om te rapporteren, zonder threads wordt er niets verstuurd
+        if (concurrency < 1 || requests < 1) {
+            throw new IllegalArgumentException("concurrency and requests must be at least 1, got "
+                    + concurrency + " and " + requests);
+        }
+        byte[] body = args.length > 2 ? Files.readAllBytes(Paths.get(args[2])) : readResource("level3.icss");
+
+        CompileServer local = null;
+        String url;
+        if (args.length > 3) {
+            url = args[3];
+        } else {
+            local = new CompileServer(0, Runtime.getRuntime().availableProcessors(), 64);
+            local.start();
+            url = "http://localhost:" + local.getPort() + CompileServer.PATH;
+        }
+
+        try {
+            run(URI.create(url), body, concurrency, requests);
+            if (local != null) {
+                System.out.printf("compiles run %d, shared with a running compile %d%n",
+                        local.getCompiler().getCompilations(), local.getCompiler().getShared());
+            }
+        } finally {
+            if (local != null) local.stop();
+        }
+    }
+
+    private static void run(URI uri, byte[] body, int concurrency, int requests) throws InterruptedException {
+        ExecutorService clientThreads = Executors.newFixedThreadPool(concurrency);
+        HttpClient client = HttpClient.newBuilder().executor(clientThreads).build();
+        long[] latencies = new long[requests];
+        Map<Integer, AtomicInteger> statuses = new TreeMap<>();
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<String> etag = new AtomicReference<>();
+
+        ExecutorService senders = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        for (int t = 0; t < concurrency; t++) {
+            senders.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+                    String known = etag.get();
+                    if (known != null && i % 2 == 1) {
+                        request.header("If-None-Match", known);
+                    }
+                    long sent = System.nanoTime();
+                    int status;
+                    try {
+                        HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+                        status = response.statusCode();
+                        response.headers().firstValue("ETag").ifPresent(etag::set);
+                    } catch (IOException | InterruptedException e) {
+                        status = -1;
+                    }
+                    latencies[i] = System.nanoTime() - sent;
+                    synchronized (statuses) {
+                        statuses.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+                    }
+                }
+            });
+        }
+        senders.shutdown();
+        senders.awaitTermination(1, TimeUnit.HOURS);
+        long elapsed = System.nanoTime() - start;
+        clientThreads.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf("%d requests, concurrency %d, %.1f s, %.0f req/s%n",
+                requests, concurrency, elapsed / 1e9, requests / (elapsed / 1e9));
+        System.out.printf("latency p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99),
+                latencies[requests - 1] / 1e6);
+        System.out.println("status codes: " + statuses);
+    }
+
+    private static double percentile(long[] sorted, int p) {
+        int index = (int) Math.min(sorted.length - 1, (long) sorted.length * p / 100);
+        return sorted[index] / 1e6;
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream in = LoadTester.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) throw new IOException("Resource not found: " + name);
+            return in.readAllBytes();
+        }
+    }
+}
@@ -1,57 +1,251 @@
 package nl.han.ica.icss.transforms;
 
 import nl.han.ica.datastructures.HANLinkedList;
+import nl.han.ica.datastructures.HANStack;
 import nl.han.ica.datastructures.IHANLinkedList;
+import nl.han.ica.datastructures.IHANStack;
+import nl.han.ica.icss.CancellationToken;
 import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.flat.FlatAST;
 import nl.han.ica.icss.ast.literals.*;
 import nl.han.ica.icss.ast.operations.*;
+import nl.han.ica.icss.ast.types.Arithmetic;
+import nl.han.ica.icss.events.PhaseEvent;
+import nl.han.ica.icss.events.SlowRuleEvent;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class Evaluator implements Transform {
 
-    private IHANLinkedList<HashMap<String, Literal>> variableValues;
+    // onder deze grens worden stylerules niet verder opgesplitst over taken
+    private static final int RULES_PER_TASK = 16;
 
-    public Evaluator() {}
+    private IHANLinkedList<Map<String, Literal>> variableValues;
+    // null betekent sequentieel evalueren
+    private final ForkJoinPool pool;
+    // wordt om de CHECK_INTERVAL nodes bekeken, ook door de workers
+    private final CancellationToken cancellation;
+    private static final int CHECK_INTERVAL = 256;
+    private int visited;
+    // of er per stylerule een JFR event gemaakt moet worden, één keer per evaluatie bepaald
+    private boolean ruleEvents;
 
+    public Evaluator() {
+        this(null);
+    }
+
+    /**
+     * Creates an evaluator that evaluates the style rules of a stylesheet concurrently on the given pool.
+     * Top-level variable assignments are still evaluated in source order; every style rule sees an
+     * immutable snapshot of the global scope as it was at the position of that rule.
+     * @param pool the pool to evaluate style rules on, or null to evaluate sequentially
+     */
+    public Evaluator(ForkJoinPool pool) {
+        this(pool, CancellationToken.NONE);
+    }
+
+    /**
+     * @param pool the pool to evaluate style rules on, or null to evaluate sequentially
+     * @param cancellation stops the evaluation with a CompilationCancelledException once cancelled
+     */
+    public Evaluator(ForkJoinPool pool, CancellationToken cancellation) {
+        this.pool = pool;
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * Evaluates the AST into a new AST; the given AST is not changed. Nodes that evaluation
+     * does not change (selectors, property names, declarations that already hold a literal,
+     * rules whose body stays the same) are shared between both trees, so the source AST can
+     * be kept and transformed again.
+     * @return the transformed AST, or the given AST when it has no root
+     */
     @Override
-    public void apply(AST ast) {
-        if (ast == null || ast.root == null) return;
+    public AST apply(AST ast) {
+        if (ast == null || ast.root == null) return ast;
 
         variableValues = new HANLinkedList<>();
         variableValues.addFirst(new HashMap<>());
+        ruleEvents = SlowRuleEvent.isTypeEnabled();
 
-        processNodes(ast.root.body, true);
+        ArrayList<ASTNode> body = pool == null
+                ? processNodes(ast.root.body, true)
+                : applyParallel(ast.root.body);
+        return new AST(like(ast.root, new Stylesheet(body)));
     }
 
-    private void processNodes(List<ASTNode> nodes, boolean isTopLevel) {
-        if (nodes == null) return;
+    /**
+     * Evaluates a flat AST one top-level statement at a time and returns the result as a new
+     * flat AST; the input is not changed. Always sequential.
+     */
+    public FlatAST apply(FlatAST ast) {
+        FlatAST.Builder result = new FlatAST.Builder();
+        if (ast == null) return result.build();
+
+        variableValues = new HANLinkedList<>();
+        variableValues.addFirst(new HashMap<>());
+        ruleEvents = SlowRuleEvent.isTypeEnabled();
+
+        for (int child = ast.firstChild(ast.root()); child != FlatAST.NONE; child = ast.nextSibling(child)) {
+            for (ASTNode evaluated : processNodes(List.of(ast.copy(child)), true)) {
+                result.append(evaluated);
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * Starts evaluating a stylesheet that arrives one top-level statement at a time,
+     * see {@link #evaluateNext(ASTNode)}. Always sequential.
+     */
+    public void begin() {
+        variableValues = new HANLinkedList<>();
+        variableValues.addFirst(new HashMap<>());
+        ruleEvents = SlowRuleEvent.isTypeEnabled();
+    }
+
+    /**
+     * Evaluates the next top-level statement after {@link #begin()}; the statement is not changed.
+     * Only the values of the global variables are kept between statements.
+     * @return the evaluated statement, or more than one when an if-clause was inlined
+     */
+    public List<ASTNode> evaluateNext(ASTNode statement) {
+        return processNodes(List.of(statement), true);
+    }
+
+    private ArrayList<ASTNode> applyParallel(List<ASTNode> nodes) {
+        ArrayList<ASTNode> body = new ArrayList<>(nodes.size());
+        List<Stylerule> rules = new ArrayList<>();
+        List<Map<String, Literal>> scopes = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        Map<String, Literal> snapshot = null;
+
+        // globale statements gaan op volgorde, stylerules worden alleen verzameld
+        for (ASTNode node : nodes) {
+            if (node instanceof Stylerule) {
+                if (snapshot == null) {
+                    snapshot = Map.copyOf(variableValues.getFirst());
+                }
+                rules.add((Stylerule) node);
+                scopes.add(snapshot);
+                positions.add(body.size());
+                // de plek wordt na het evalueren ingevuld
+                body.add(null);
+            } else if (node instanceof VariableAssignment) {
+                body.add(evaluateVariableAssignment((VariableAssignment) node));
+                // de volgende stylerule heeft een nieuwe snapshot nodig
+                snapshot = null;
+            } else if (node instanceof Declaration) {
+                body.add(evaluateDeclaration((Declaration) node));
+            } else if (node instanceof IfClause) {
+                body.add(misplacedIf((IfClause) node));
+            } else {
+                body.add(node);
+            }
+        }
+
+        Stylerule[] evaluated = new Stylerule[rules.size()];
+        pool.invoke(new RuleTask(rules, scopes, cancellation, ruleEvents, evaluated, 0, rules.size()));
+        for (int i = 0; i < evaluated.length; i++) {
+            body.set(positions.get(i), evaluated[i]);
+        }
+        return body;
+    }
+
+    /*
+     * Evaluates a range of style rules, splitting it in halves until it is small enough.
+     * Each leaf uses its own evaluator so the scope stacks are never shared between threads;
+     * each leaf writes only its own slots of the array.
+     */
+    private static class RuleTask extends RecursiveAction {
+        private final List<Stylerule> rules;
+        private final List<Map<String, Literal>> scopes;
+        private final CancellationToken cancellation;
+        private final boolean ruleEvents;
+        private final Stylerule[] evaluated;
+        private final int from;
+        private final int to;
+
+        RuleTask(List<Stylerule> rules, List<Map<String, Literal>> scopes, CancellationToken cancellation,
+                 boolean ruleEvents, Stylerule[] evaluated, int from, int to) {
+            this.rules = rules;
+            this.scopes = scopes;
+            this.cancellation = cancellation;
+            this.ruleEvents = ruleEvents;
+            this.evaluated = evaluated;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= RULES_PER_TASK) {
+                Evaluator worker = new Evaluator(null, cancellation);
+                worker.ruleEvents = ruleEvents;
+                for (int i = from; i < to; i++) {
+                    worker.variableValues = new HANLinkedList<>();
+                    worker.variableValues.addFirst(scopes.get(i));
+                    evaluated[i] = worker.processStylerule(rules.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RuleTask(rules, scopes, cancellation, ruleEvents, evaluated, from, middle),
+                    new RuleTask(rules, scopes, cancellation, ruleEvents, evaluated, middle, to));
+        }
+    }
 
-        for (int i = 0; i < nodes.size(); ) {
-            ASTNode node = nodes.get(i);
+    /*
+     * Evaluates the nodes in order and returns the resulting body in a new list, built in one
+     * forward pass: a taken if-branch is inlined by processing its body into the same list, and
+     * assignments inside rules are left out. Every node is visited once, however many
+     * conditionals there are.
+     */
+    private ArrayList<ASTNode> processNodes(List<ASTNode> nodes, boolean isTopLevel) {
+        ArrayList<ASTNode> result = new ArrayList<>(nodes == null ? 0 : nodes.size());
+        processNodes(nodes, isTopLevel, result);
+        return result;
+    }
 
+    private void processNodes(List<ASTNode> nodes, boolean isTopLevel, ArrayList<ASTNode> result) {
+        if (nodes == null) return;
+
+        // een gekozen if-tak wordt als nieuwe lijst op de stack gezet in plaats van recursief verwerkt,
+        // zodat de diepte van geneste ifs niet door de Java stack begrensd wordt
+        IHANStack<Iterator<ASTNode>> lists = new HANStack<>();
+        lists.push(nodes.iterator());
+        int depth = 1;
+        while (!lists.isEmpty()) {
+            Iterator<ASTNode> remaining = lists.peek();
+            if (!remaining.hasNext()) {
+                lists.pop();
+                depth--;
+                continue;
+            }
+            ASTNode node = remaining.next();
+            checkpoint();
+            boolean topLevel = isTopLevel && depth == 1;
             if (node instanceof VariableAssignment) {
-                evaluateVariableAssignment((VariableAssignment) node);
-                // Remove variable assignments from the tree (they shouldn't appear in CSS)
-                if (!isTopLevel) {
-                    nodes.remove(i);
-                    // Don't increment i, next element shifts in
-                } else {
-                    i++;
+                ASTNode evaluated = evaluateVariableAssignment((VariableAssignment) node);
+                // variable assignments in rules horen niet in de CSS
+                if (topLevel) {
+                    result.add(evaluated);
                 }
             } else if (node instanceof Declaration) {
-                evaluateDeclaration((Declaration) node);
-                i++;
+                result.add(evaluateDeclaration((Declaration) node));
             } else if (node instanceof Stylerule) {
-                processStylerule((Stylerule) node);
-                i++;
+                result.add(processStylerule((Stylerule) node));
             } else if (node instanceof IfClause) {
                 IfClause ifc = (IfClause) node;
 
-                if (isTopLevel) {
-                    ifc.setError("If-expressions are only allowed inside style rules");
-                    i++;
+                if (topLevel) {
+                    result.add(misplacedIf(ifc));
                     continue;
                 }
 
@@ -70,157 +264,159 @@ public class Evaluator implements Transform {
                     if (looked instanceof BoolLiteral) condTrue = ((BoolLiteral) looked).value;
                 }
 
+                // de gekozen tak komt op de plek van de if, geneste ifs worden meteen mee verwerkt
                 if (condTrue) {
-                    nodes.remove(i);
-                    if (!ifc.body.isEmpty()) {
-                        nodes.addAll(i, ifc.body);
-                    }
-                } else {
-                    ElseClause elseC = ifc.getElseClause();
-                    if (elseC != null) {
-                        // replace the IfClause with else body
-                        nodes.remove(i);
-                        if (!elseC.body.isEmpty()) {
-                            nodes.addAll(i, elseC.body);
-                        }
-                    } else {
-                        nodes.remove(i);
-                    }
+                    lists.push(ifc.body.iterator());
+                    depth++;
+                } else if (ifc.getElseClause() != null) {
+                    lists.push(ifc.getElseClause().body.iterator());
+                    depth++;
                 }
-
             } else {
-                i++;
+                result.add(node);
             }
         }
     }
 
-    private void processStylerule(Stylerule rule) {
-        if (rule == null) return;
+    /*
+     * Returns the rule with an evaluated body: the same rule when nothing in its body changed,
+     * otherwise a new rule that shares the selectors and unchanged declarations.
+     */
+    private Stylerule processStylerule(Stylerule rule) {
+        if (rule == null) return null;
+        SlowRuleEvent event = SlowRuleEvent.start(ruleEvents);
         // push a new scope for this stylerule
         variableValues.addFirst(new HashMap<>());
-        processNodes(rule.body, false);
+        ArrayList<ASTNode> body = processNodes(rule.body, false);
         // pop stylerule scope
         variableValues.removeFirst();
+
+        Stylerule result = rule;
+        if (!sameNodes(rule.body, body)) {
+            result = like(rule, new Stylerule());
+            result.selectors = new ArrayList<>(rule.selectors);
+            result.body = body;
+        }
+        SlowRuleEvent.finish(event, PhaseEvent.TRANSFORM, rule);
+        return result;
     }
 
-    private void evaluateVariableAssignment(VariableAssignment va) {
-        if (va == null) return;
+    private ASTNode evaluateVariableAssignment(VariableAssignment va) {
+        if (va == null) return null;
         Expression expr = va.expression;
         Literal evaluated = evaluateExpression(expr);
-        if (evaluated != null) {
-            HashMap<String, Literal> scope = variableValues.getFirst();
-            if (va.name != null && va.name.name != null && scope != null) {
-                scope.put(va.name.name, evaluated);
-            }
-            // replace the expression in the assignment with the literal
-            va.expression = evaluated;
+        if (evaluated == null) return va;
+
+        Map<String, Literal> scope = variableValues.getFirst();
+        if (va.name != null && va.name.name != null && scope != null) {
+            scope.put(va.name.name, evaluated);
         }
+        if (evaluated == expr) return va;
+        // een nieuwe assignment met de literal, de oorspronkelijke blijft zoals hij was
+        VariableAssignment result = like(va, new VariableAssignment());
+        result.name = va.name;
+        result.expression = evaluated;
+        return result;
     }
 
-    private void evaluateDeclaration(Declaration decl) {
-        if (decl == null) return;
+    private ASTNode evaluateDeclaration(Declaration decl) {
+        if (decl == null) return null;
         Expression expr = decl.expression;
         Literal evaluated = evaluateExpression(expr);
-        if (evaluated != null) {
-            decl.expression = evaluated;
-        }
-    }
+        if (evaluated == null || evaluated == expr) return decl;
 
-    private Literal evaluateExpression(ASTNode node) {
-        if (node == null) return null;
+        Declaration result = like(decl, new Declaration());
+        result.property = decl.property;
+        result.expression = evaluated;
+        return result;
+    }
 
-        if (node instanceof Literal) return (Literal) node;
+    private static IfClause misplacedIf(IfClause ifc) {
+        IfClause result = like(ifc, new IfClause(ifc.conditionalExpression, new ArrayList<>(ifc.body), ifc.elseClause));
+        result.setError("If-expressions are only allowed inside style rules");
+        return result;
+    }
 
-        if (node instanceof VariableReference) {
-            String name = ((VariableReference) node).name;
-            Literal val = lookupVariableValue(name);
-            return val; // may be null if undefined
-        }
+    // geeft de kopie de positie en fout van het origineel
+    private static <T extends ASTNode> T like(ASTNode original, T copy) {
+        copy.setPosition(original.getLine(), original.getColumn());
+        if (original.hasError()) copy.setError(original.getError().description);
+        return copy;
+    }
 
-        if (node instanceof AddOperation) {
-            AddOperation op = (AddOperation) node;
-            Literal left = evaluateExpression(op.lhs);
-            Literal right = evaluateExpression(op.rhs);
-            return evaluateAdd(left, right);
+    private static boolean sameNodes(List<ASTNode> a, List<ASTNode> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) return false;
         }
-        if (node instanceof SubtractOperation) {
-            SubtractOperation op = (SubtractOperation) node;
-            Literal left = evaluateExpression(op.lhs);
-            Literal right = evaluateExpression(op.rhs);
-            return evaluateSubtract(left, right);
-        }
-        if (node instanceof MultiplyOperation) {
-            MultiplyOperation op = (MultiplyOperation) node;
-            Literal left = evaluateExpression(op.lhs);
-            Literal right = evaluateExpression(op.rhs);
-            return evaluateMultiply(left, right);
-        }
-
-        return null;
+        return true;
     }
 
-    private Literal evaluateAdd(Literal a, Literal b) {
-        if (a == null || b == null) return null;
-        // Pixel + Pixel -> Pixel
-        if (a instanceof PixelLiteral && b instanceof PixelLiteral) {
-            int sum = ((PixelLiteral) a).value + ((PixelLiteral) b).value;
-            return new PixelLiteral(sum);
-        }
-        // Scalar + Scalar -> Scalar
-        if (a instanceof ScalarLiteral && b instanceof ScalarLiteral) {
-            int sum = ((ScalarLiteral) a).value + ((ScalarLiteral) b).value;
-            return new ScalarLiteral(sum);
+    private void checkpoint() {
+        if (++visited % CHECK_INTERVAL == 0) {
+            cancellation.throwIfCancelled();
         }
-        // Percentage + Percentage -> Percentage
-        if (a instanceof PercentageLiteral && b instanceof PercentageLiteral) {
-            int sum = ((PercentageLiteral) a).value + ((PercentageLiteral) b).value;
-            return new PercentageLiteral(sum);
-        }
-        // unsupported combinaties
-        return null;
     }
 
-    private Literal evaluateSubtract(Literal a, Literal b) {
-        if (a == null || b == null) return null;
-        if (a instanceof PixelLiteral && b instanceof PixelLiteral) {
-            int res = ((PixelLiteral) a).value - ((PixelLiteral) b).value;
-            return new PixelLiteral(res);
-        }
-        if (a instanceof ScalarLiteral && b instanceof ScalarLiteral) {
-            int res = ((ScalarLiteral) a).value - ((ScalarLiteral) b).value;
-            return new ScalarLiteral(res);
-        }
-        if (a instanceof PercentageLiteral && b instanceof PercentageLiteral) {
-            int res = ((PercentageLiteral) a).value - ((PercentageLiteral) b).value;
-            return new PercentageLiteral(res);
+    // markeringen voor evaluateExpression, zodat de stacks geen null hoeven te bevatten
+    private static final ASTNode MISSING = new ASTNode();
+    private static final ASTNode COMBINE = new ASTNode();
+    private static final Literal NO_VALUE = new Literal() { };
+
+    /*
+     * Evaluates the expression in post-order with explicit stacks: first the operands from
+     * left to right, then the operation. Returns null when the value is unknown.
+     */
+    private Literal evaluateExpression(ASTNode expression) {
+        checkpoint();
+        if (expression == null) return null;
+        if (expression instanceof Literal) return (Literal) expression;
+
+        IHANStack<ASTNode> pending = new HANStack<>();
+        IHANStack<Operation> operations = new HANStack<>();
+        IHANStack<Literal> results = new HANStack<>();
+        pending.push(expression);
+        while (!pending.isEmpty()) {
+            ASTNode node = pending.pop();
+            Literal value;
+            if (node == MISSING) {
+                value = null;
+            } else if (node == COMBINE) {
+                Operation operation = operations.pop();
+                Literal right = results.pop();
+                Literal left = results.pop();
+                value = combine(operation, left == NO_VALUE ? null : left, right == NO_VALUE ? null : right);
+            } else if (node instanceof Operation) {
+                checkpoint();
+                Operation operation = (Operation) node;
+                operations.push(operation);
+                pending.push(COMBINE);
+                pending.push(operation.rhs != null ? operation.rhs : MISSING);
+                pending.push(operation.lhs != null ? operation.lhs : MISSING);
+                continue;
+            } else if (node instanceof Literal) {
+                value = (Literal) node;
+            } else if (node instanceof VariableReference) {
+                value = lookupVariableValue(((VariableReference) node).name); // may be null if undefined
+            } else {
+                value = null;
+            }
+            results.push(value == null ? NO_VALUE : value);
         }
-        return null;
+        Literal value = results.pop();
+        return value == NO_VALUE ? null : value;
     }
 
-    private Literal evaluateMultiply(Literal a, Literal b) {
-        if (a == null || b == null) return null;
-        // Scalar * Pixel -> Pixel
-        if (a instanceof ScalarLiteral && b instanceof PixelLiteral) {
-            int res = ((ScalarLiteral) a).value * ((PixelLiteral) b).value;
-            return new PixelLiteral(res);
-        }
-        if (b instanceof ScalarLiteral && a instanceof PixelLiteral) {
-            int res = ((ScalarLiteral) b).value * ((PixelLiteral) a).value;
-            return new PixelLiteral(res);
-        }
-        // Scalar * Scalar -> Scalar
-        if (a instanceof ScalarLiteral && b instanceof ScalarLiteral) {
-            int res = ((ScalarLiteral) a).value * ((ScalarLiteral) b).value;
-            return new ScalarLiteral(res);
-        }
-        return null;
+    private Literal combine(Operation op, Literal left, Literal right) {
+        // de rekenregels staan in één tabel die ook de checker gebruikt
+        return Arithmetic.apply(Arithmetic.Operator.of(op), left, right);
     }
 
     private Literal lookupVariableValue(String name) {
         if (name == null) return null;
         int scopes = variableValues.getSize();
         for (int i = 0; i < scopes; i++) {
-            HashMap<String, Literal> scope = variableValues.get(i);
+            Map<String, Literal> scope = variableValues.get(i);
             if (scope != null && scope.containsKey(name)) return scope.get(name);
         }
         return null;
@@ -0,0 +1,70 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import java.util.ArrayList;
+
+/**
+ * Scaling benchmark for if-clause inlining.
+ *
+ * Usage: IfInliningBenchmark [maxConditionals]
+ * Evaluates a single style rule with n conditionals for n doubling up to the maximum
+ * (default 262 144) and prints the best time per conditional. Linear inlining keeps
+ * that time flat as n grows; a quadratic one doubles it with every step.
+ */
+public class IfInliningBenchmark {
+
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        int max = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 18;
+
+        System.out.printf("%10s %12s %14s%n", "ifs", "best ms", "ns per if");
+        for (int n = 1024; n <= max; n *= 2) {
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                AST ast = ruleWithConditionals(n);
+                long start = System.nanoTime();
+                new Evaluator().apply(ast);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.printf("%10d %12.2f %14.1f%n", n, best / 1e6, (double) best / n);
+        }
+    }
+
+    /*
+     * Every conditional alternates between a taken if-branch and a taken else-branch, each with
+     * a nested conditional and an assignment that has to disappear from the output.
+     */
+    static AST ruleWithConditionals(int count) {
+        Stylerule rule = new Stylerule();
+        rule.addChild(new TagSelector("p"));
+        for (int i = 0; i < count; i++) {
+            IfClause nested = new IfClause();
+            nested.addChild(new BoolLiteral(true));
+            nested.addChild((new Declaration("height")).addChild(new PixelLiteral(i)));
+
+            ArrayList<ASTNode> branch = new ArrayList<>();
+            branch.add((new VariableAssignment())
+                    .addChild(new VariableReference("Width"))
+                    .addChild(new PixelLiteral(i)));
+            branch.add((new Declaration("width")).addChild(new VariableReference("Width")));
+            branch.add(nested);
+
+            IfClause ifc = new IfClause();
+            ifc.addChild(new BoolLiteral(i % 2 == 0));
+            if (i % 2 == 0) {
+                ifc.body = branch;
+            } else {
+                ifc.addChild(new ElseClause(branch));
+            }
+            rule.addChild(ifc);
+        }
+        Stylesheet stylesheet = new Stylesheet();
+        stylesheet.addChild(rule);
+        return new AST(stylesheet);
+    }
+}
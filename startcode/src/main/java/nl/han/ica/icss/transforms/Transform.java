@@ -3,5 +3,8 @@ package nl.han.ica.icss.transforms;
 import nl.han.ica.icss.ast.AST;
 
 public interface Transform {
-    void apply(AST ast);
+    /**
+     * @return the transformed AST
+     */
+    AST apply(AST ast);
 }
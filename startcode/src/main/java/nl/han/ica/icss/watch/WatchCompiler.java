@@ -0,0 +1,204 @@
+package nl.han.ica.icss.watch;
+
+import nl.han.ica.icss.imports.Module;
+import nl.han.ica.icss.imports.ModuleCompiler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches a directory tree and recompiles every .icss file whose content changed
+ * into a .css file next to it. Files that import a changed file are recompiled as well.
+ *
+ * File events that arrive within a short window are handled as one batch, so an editor
+ * that writes a file in several steps triggers a single compile. A file that cannot be
+ * read or written is reported and tried again on its next change; the other files go on.
+ * Closing the watcher ends {@link #run()}.
+ */
+public class WatchCompiler implements Closeable {
+
+    // hoe lang het stil moet zijn voordat een batch events verwerkt wordt
+    private static final long BATCH_WINDOW_MS = 20;
+
+    private final Path root;
+    private final WatchService watcher;
+    // houdt per bestand het laatste resultaat en de hash van de inhoud bij
+    private final ModuleCompiler modules = new ModuleCompiler();
+    private final Set<Path> sources = new LinkedHashSet<>();
+
+    public WatchCompiler(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.watcher = root.getFileSystem().newWatchService();
+    }
+
+    /**
+     * Compiles every file under the root, then recompiles changed files until {@link #close()} is called.
+     */
+    public void run() throws IOException, InterruptedException {
+        for (Path path : scan(root)) {
+            sources.add(path);
+            long start = System.nanoTime();
+            try {
+                report(modules.compile(path), start);
+            } catch (IOException e) {
+                failed(path, e);
+            }
+        }
+
+        try {
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<>();
+                WatchKey key = watcher.take();
+                // blijf events verzamelen tot het een venster lang stil is
+                while (key != null) {
+                    collect(key, changed);
+                    key = watcher.poll(BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+                }
+                for (Path path : changed) {
+                    if (Files.exists(path)) {
+                        sources.add(path);
+                    } else {
+                        sources.remove(path);
+                    }
+                    try {
+                        compileIfChanged(path);
+                    } catch (IOException e) {
+                        failed(path, e);
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // close() is aangeroepen
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+    }
+
+    /*
+     * Registreert de map en al zijn submappen en geeft de bronbestanden erin. Een map die
+     * tijdens het lopen weer verdwijnt wordt overgeslagen.
+     */
+    private List<Path> scan(Path directory) throws IOException {
+        List<Path> found = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isDirectory(path)) {
+                    register(path);
+                } else if (isSource(path)) {
+                    found.add(path);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // de map is al weer weg
+        }
+        return found;
+    }
+
+    private void register(Path directory) throws IOException {
+        directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+    }
+
+    private void collect(WatchKey key, Set<Path> changed) throws IOException {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // events gemist, dus alles opnieuw bekijken; ongewijzigde bestanden vallen op de hash af
+                changed.addAll(sources);
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                // een nieuwe map kan al bestanden en submappen hebben voordat hij geregistreerd is
+                changed.addAll(scan(path));
+            } else if (isSource(path)) {
+                changed.add(path);
+            }
+        }
+        key.reset();
+    }
+
+    /**
+     * Recompiles the file and the files importing it when its content differs from the
+     * last compiled version. A file whose CSS could not be written is reported and
+     * compiled again on the next call, even when its content did not change.
+     * @return true when anything was compiled
+     */
+    boolean compileIfChanged(Path source) throws IOException {
+        long start = System.nanoTime();
+        List<Module> rebuilt = modules.rebuild(source);
+        for (Module module : rebuilt) {
+            try {
+                report(module, start);
+            } catch (IOException e) {
+                failed(module.file, e);
+            }
+        }
+        return !rebuilt.isEmpty();
+    }
+
+    private void report(Module module, long start) throws IOException {
+        Path source = root.relativize(module.file);
+        if (module.hasErrors()) {
+            System.out.println(source + ": " + module.errors.size() + " error(s)");
+            for (String error : module.errors) {
+                System.out.println("  " + error);
+            }
+            return;
+        }
+        try {
+            writeAtomically(outputFor(module.file), module.css);
+        } catch (IOException e) {
+            // de hash pas bewaren als de CSS er echt staat, anders wordt hij nooit opnieuw geschreven
+            modules.forget(module.file);
+            throw e;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%s: compiled in %.1f ms%n", source, elapsed / 1e6);
+    }
+
+    private void failed(Path file, IOException e) {
+        System.out.println(root.relativize(file.toAbsolutePath().normalize()) + ": failed: " + e);
+    }
+
+    static Path outputFor(Path source) {
+        String name = source.getFileName().toString();
+        return source.resolveSibling(name.substring(0, name.length() - ".icss".length()) + ".css");
+    }
+
+    // schrijft eerst naar een tijdelijk bestand, zodat lezers nooit een half bestand zien
+    static void writeAtomically(Path target, String css) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temp, css, StandardCharsets.UTF_8);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static boolean isSource(Path path) {
+        return path.getFileName().toString().endsWith(".icss");
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path root = Paths.get(args.length > 0 ? args[0] : ".").toAbsolutePath().normalize();
+        System.out.println("Watching " + root + " for .icss changes");
+        try (WatchCompiler compiler = new WatchCompiler(root)) {
+            compiler.run();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.compiler.CompilationResult;
+import nl.han.ica.icss.compiler.CompileOptions;
+import nl.han.ica.icss.compiler.Compiler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeepNestingTest {
+
+    private static final int DEPTH = 100_000;
+
+    // de parser is recursive descent, dus diep geneste if's worden direct als boom gebouwd
+    static AST nestedIfs(int depth) {
+        ASTNode inner = new Declaration("width").addChild(new PixelLiteral(1));
+        for (int i = 0; i < depth; i++) {
+            ArrayList<ASTNode> body = new ArrayList<>();
+            body.add(inner);
+            if (i % 2 == 0) {
+                inner = new IfClause(new BoolLiteral(true), body);
+            } else {
+                inner = new IfClause(new BoolLiteral(false), new ArrayList<>(), new ElseClause(body));
+            }
+        }
+        ArrayList<ASTNode> ruleBody = new ArrayList<>();
+        ruleBody.add(inner);
+        ArrayList<ASTNode> sheet = new ArrayList<>();
+        sheet.add(new Stylerule(new TagSelector("p"), ruleBody));
+        return new AST(new Stylesheet(sheet));
+    }
+
+    static String additionChain(int terms) {
+        StringBuilder input = new StringBuilder("p { width: 1px");
+        for (int i = 1; i < terms; i++) {
+            input.append(" + 1px");
+        }
+        return input.append("; }").toString();
+    }
+
+    @Test
+    void testLongAdditionChain() {
+        String input = additionChain(DEPTH);
+        CompilationResult result = new Compiler().compile(input);
+
+        assertTrue(result.getErrors().isEmpty(), () -> result.getErrors().toString());
+        assertEquals("p {\n  width: " + DEPTH + "px;\n}\n\n", result.css);
+
+        AST again = new Compiler().parse(input).sourceAST;
+        assertEquals(result.sourceAST, again);
+        assertEquals(result.sourceAST.hashCode(), again.hashCode());
+        assertEquals(result.sourceAST.toString(), again.toString());
+        assertTrue(result.sourceAST.getErrors().isEmpty());
+    }
+
+    @Test
+    void testDeeplyNestedIfClauses() {
+        AST source = nestedIfs(DEPTH);
+        CompilationResult result = new Compiler().compile(source, CompileOptions.DEFAULT, CancellationToken.NONE);
+
+        assertTrue(result.getErrors().isEmpty(), () -> result.getErrors().toString());
+        assertEquals("p {\n  width: 1px;\n}\n\n", result.css);
+
+        assertEquals(source, nestedIfs(DEPTH));
+        assertEquals(source.hashCode(), nestedIfs(DEPTH).hashCode());
+        assertNotEquals(source, nestedIfs(DEPTH - 1));
+        assertTrue(source.toString().length() > DEPTH);
+        assertTrue(source.getErrors().isEmpty());
+    }
+}
@@ -0,0 +1,74 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.diagnostics.Diagnostic;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineTest {
+
+    static String undefinedVariables(int count) {
+        StringBuilder input = new StringBuilder("p {\n");
+        for (int i = 0; i < count; i++) {
+            input.append("  width: Missing").append(i).append(";\n");
+        }
+        return input.append("}\n").toString();
+    }
+
+    @Test
+    void testDiagnosticsHavePositions() {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString("p {\n  width: Missing;\n}");
+        assertTrue(pipeline.isParsed());
+        assertFalse(pipeline.check());
+
+        Diagnostic first = pipeline.getDiagnostics().getDiagnostics().get(0);
+        assertEquals(Diagnostic.Kind.SEMANTIC, first.kind);
+        assertEquals(2, first.line);
+        assertEquals(10, first.column);
+        assertEquals("ERROR at 2:10: Undefined variable 'Missing'", first.toString());
+    }
+
+    @Test
+    void testSyntaxErrorPosition() {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString("p {\n  width 10px;\n}");
+        assertFalse(pipeline.isParsed());
+        Diagnostic first = pipeline.getDiagnostics().getDiagnostics().get(0);
+        assertEquals(Diagnostic.Kind.SYNTAX, first.kind);
+        assertEquals(2, first.line);
+    }
+
+    @Test
+    void testErrorLimitStopsCheck() {
+        Pipeline pipeline = new Pipeline();
+        pipeline.setMaxErrors(5);
+        pipeline.parseString(undefinedVariables(1000));
+        assertTrue(pipeline.isParsed());
+        assertFalse(pipeline.check());
+
+        assertEquals(5, pipeline.getDiagnostics().size());
+        assertTrue(pipeline.getDiagnostics().isLimitReached());
+        List<String> errors = pipeline.getErrors();
+        assertEquals(6, errors.size());
+        assertEquals("Too many errors, stopped after 5", errors.get(5));
+    }
+
+    @Test
+    void testTransformAgainWithoutReparsing() {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString("Width := 10px;\np { width: Width + 5px; }");
+        assertTrue(pipeline.check());
+        AST source = pipeline.getSourceAST();
+
+        pipeline.transform();
+        String first = pipeline.generate();
+        assertNotSame(source, pipeline.getAST());
+        pipeline.transform();
+        assertEquals(first, pipeline.generate());
+        assertSame(source, pipeline.getSourceAST());
+    }
+}
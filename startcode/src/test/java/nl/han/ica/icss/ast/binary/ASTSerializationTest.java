@@ -0,0 +1,180 @@
+package nl.han.ica.icss.ast.binary;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.NodeKinds;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ASTSerializationTest {
+
+    AST roundTrip(AST ast) throws IOException {
+        return ASTReader.read(ASTWriter.toBytes(ast));
+    }
+
+    @Test
+    void testFixturesRoundTrip() throws IOException {
+        for (AST ast : new AST[] { Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+                Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3() }) {
+            assertEquals(ast, roundTrip(ast));
+        }
+    }
+
+    @Test
+    void testTransformedRoundTrip() throws IOException {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString("Width := 10px;\nUse := TRUE;\np { width: Width * 2 - 5px; padding: 1.5rem * 2; margin: 0.25em; if[Use] { color: #ff0000; } else { color: #00ff00; } }");
+        assertTrue(pipeline.check());
+        pipeline.transform();
+
+        AST read = roundTrip(pipeline.getAST());
+        assertEquals(pipeline.getAST(), read);
+        assertEquals(pipeline.generate(), new Generator().generate(read));
+    }
+
+    @Test
+    void testErrorsAndPositionsRoundTrip() throws IOException {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString("p {\n  width: Missing;\n}");
+        assertFalse(pipeline.check());
+
+        // de fouten staan in de annotaties en worden bij de nodes opgeslagen
+        AST read = ASTReader.read(ASTWriter.toBytes(pipeline.getAST(), pipeline.getAnnotations()));
+        assertEquals(pipeline.getAST(), read);
+        ASTNode declaration = ((Stylerule) read.root.body.get(0)).body.get(0);
+        assertEquals(2, declaration.getLine());
+        assertEquals(3, declaration.getColumn());
+        ASTNode reference = ((Declaration) declaration).expression;
+        assertTrue(reference.hasError());
+        // de annotaties houden de volgorde van vinden aan, de boom de volgorde van de nodes
+        assertEquals(new HashSet<>(pipeline.getAnnotations().getErrors().stream().map(Object::toString).toList()),
+                new HashSet<>(read.getErrors().stream().map(Object::toString).toList()));
+    }
+
+    @Test
+    void testSaveAndLoad(@TempDir Path directory) throws IOException {
+        Pipeline first = new Pipeline();
+        first.parseString("Width := 10px;\np { width: Width + 5px; }");
+        Path file = directory.resolve("level.icsb");
+        first.saveAST(file);
+
+        Pipeline second = new Pipeline();
+        second.loadAST(file);
+        assertTrue(second.isParsed());
+        assertTrue(second.check());
+        second.transform();
+        assertEquals("p {\n  width: 15px;\n}\n\n", second.generate());
+    }
+
+    @Test
+    void testRejectsOtherInput() {
+        assertThrows(IOException.class, () -> ASTReader.read(new byte[] { 'n', 'o', 'p', 'e', 1, 0, 0 }));
+        byte[] bytes = ASTWriter.toBytes(Fixtures.uncheckedLevel0());
+        bytes[4] = 99;
+        assertThrows(IOException.class, () -> ASTReader.read(bytes));
+    }
+
+    @Test
+    void testRejectsTruncatedInput() {
+        byte[] bytes = ASTWriter.toBytes(Fixtures.uncheckedLevel3());
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(IOException.class, () -> ASTReader.read(truncated), "length " + length);
+        }
+        byte[] longer = Arrays.copyOf(bytes, bytes.length + 1);
+        assertThrows(IOException.class, () -> ASTReader.read(longer));
+    }
+
+    @Test
+    void testRejectsCorruptLengths() {
+        // header, dan een string tabel die meer strings belooft dan er bytes zijn
+        assertThrows(IOException.class, () -> ASTReader.read(header(0xff, 0xff, 0xff, 0x7f)));
+        // één string met een negatieve lengte
+        assertThrows(IOException.class, () -> ASTReader.read(header(1, 0xff, 0xff, 0xff, 0xff, 0x0f)));
+        // één string die langer is dan de rest van de invoer
+        assertThrows(IOException.class, () -> ASTReader.read(header(1, 100, 'a')));
+        // een varint die nooit eindigt
+        assertThrows(IOException.class, () -> ASTReader.read(header(0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0x01)));
+        // een stylesheet met een enorm aantal kinderen
+        assertThrows(IOException.class, () -> ASTReader.read(header(0, NodeKinds.STYLESHEET, 0xff, 0xff, 0xff, 0x7f)));
+        // een string index buiten de tabel
+        assertThrows(IOException.class, () -> ASTReader.read(header(0, NodeKinds.STYLESHEET, 1, NodeKinds.PROPERTY_NAME, 5)));
+    }
+
+    @Test
+    void testCorruptBytesNeverEscapeAsRuntimeExceptions() {
+        byte[] bytes = ASTWriter.toBytes(Fixtures.uncheckedLevel3());
+        Random random = new Random(42);
+        for (int i = 0; i < 5_000; i++) {
+            byte[] corrupt = bytes.clone();
+            for (int flips = 1 + random.nextInt(3); flips > 0; flips--) {
+                corrupt[Tags.MAGIC.length + 1 + random.nextInt(corrupt.length - Tags.MAGIC.length - 1)] = (byte) random.nextInt();
+            }
+            try {
+                ASTReader.read(corrupt);
+            } catch (IOException e) {
+                // verwacht: kapotte invoer wordt als IOException gemeld
+            }
+        }
+    }
+
+    @Test
+    void testDeepTreesRoundTrip(@TempDir Path directory) throws IOException {
+        StringBuilder input = new StringBuilder("p { width: 1px");
+        for (int i = 1; i < 100_000; i++) {
+            input.append(" + 1px");
+        }
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input.append("; }").toString());
+        Path file = directory.resolve("chain.icsb");
+        pipeline.saveAST(file);
+
+        Pipeline loaded = new Pipeline();
+        loaded.loadAST(file);
+        assertEquals(pipeline.getAST(), loaded.getAST());
+    }
+
+    @Test
+    void testDeeplyNestedCorruptInputIsAnIOException() {
+        // een stylesheet met één rule, één declaratie en dan alleen nog optellingen zonder einde
+        int depth = 200_000;
+        int[] rest = new int[8 + depth];
+        int[] start = { 0, NodeKinds.STYLESHEET, 1, NodeKinds.STYLERULE, 1, NodeKinds.TAG_SELECTOR, 0, 1 };
+        System.arraycopy(start, 0, rest, 0, start.length);
+        Arrays.fill(rest, start.length, rest.length, NodeKinds.ADD);
+        assertThrows(IOException.class, () -> ASTReader.read(header(rest)));
+    }
+
+    @Test
+    void testRejectsMissingSelectorOrProperty() {
+        // een rule met een lege selector
+        assertThrows(IOException.class, () -> ASTReader.read(header(0, NodeKinds.STYLESHEET, 1,
+                NodeKinds.STYLERULE, 1, NodeKinds.NULL, 0)));
+        // een declaratie zonder property
+        assertThrows(IOException.class, () -> ASTReader.read(header(0, NodeKinds.STYLESHEET, 1,
+                NodeKinds.STYLERULE, 1, NodeKinds.TAG_SELECTOR, 0, 1, NodeKinds.DECLARATION, NodeKinds.NULL, NodeKinds.NULL)));
+    }
+
+    private static byte[] header(int... rest) {
+        byte[] bytes = new byte[Tags.MAGIC.length + 1 + rest.length];
+        System.arraycopy(Tags.MAGIC, 0, bytes, 0, Tags.MAGIC.length);
+        bytes[Tags.MAGIC.length] = (byte) Tags.VERSION;
+        for (int i = 0; i < rest.length; i++) {
+            bytes[Tags.MAGIC.length + 1 + i] = (byte) rest[i];
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,99 @@
+package nl.han.ica.icss.ast.flat;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.NodeKinds;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.diagnostics.DiagnosticCollector;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.Fixtures;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlatASTTest {
+
+    static AST parse(String input) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input);
+        return pipeline.getAST();
+    }
+
+    @Test
+    void testViewMatchesOriginal() {
+        for (AST ast : new AST[] { Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+                Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3() }) {
+            assertEquals(ast, FlatAST.from(ast).toAST());
+        }
+    }
+
+    @Test
+    void testKindsAreNodeKinds() {
+        FlatAST flat = FlatAST.from(parse("Use := FALSE;\np { if[TRUE] { width: 1em * 2; } color: #ff0000; }"));
+        for (int node = 0; node < flat.size(); node++) {
+            ASTNode copy = flat.copy(node);
+            assertEquals(NodeKinds.of(copy), flat.kind(node), copy.getNodeLabel());
+        }
+        // de kopie staat los van de platte boom
+        assertNotSame(flat.copy(1), flat.copy(1));
+    }
+
+    @Test
+    void testSharedStrings() {
+        FlatAST flat = FlatAST.from(parse("p { width: 10px; }\np { width: 20px; }"));
+        int first = flat.firstChild(flat.root());
+        int second = flat.nextSibling(first);
+        assertSame(flat.string(flat.firstChild(first)), flat.string(flat.firstChild(second)));
+        assertEquals(FlatAST.NONE, flat.nextSibling(second));
+    }
+
+    @Test
+    void testCheckerReportsSameErrors() {
+        AST ast = parse("Width := 10px;\np { width: Missing; height: Width * Width; }\nif[TRUE] { }");
+        DiagnosticCollector objects = new DiagnosticCollector();
+        DiagnosticCollector flat = new DiagnosticCollector();
+        FlatAST flatAST = FlatAST.from(ast);
+
+        new Checker(objects).check(ast);
+        new Checker(flat).check(flatAST);
+
+        assertFalse(objects.isEmpty());
+        assertEquals(objects.getDiagnostics().toString(), flat.getDiagnostics().toString());
+        assertFalse(flatAST.hasErrors());
+    }
+
+    @Test
+    void testEvaluateAndGenerateMatchObjectPipeline() {
+        String input = Footprint.stylesheet(100);
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input);
+        FlatAST flat = FlatAST.from(pipeline.getAST());
+        assertTrue(pipeline.check());
+        pipeline.transform();
+
+        FlatAST transformed = new Evaluator().apply(flat);
+        assertEquals(pipeline.getAST(), transformed.toAST());
+        assertEquals(pipeline.generate(), new Generator().generate(transformed));
+        // de invoer is niet veranderd
+        assertEquals(parse(input), flat.toAST());
+    }
+
+    @Test
+    void testDeepTrees() {
+        StringBuilder input = new StringBuilder("p { width: 1px");
+        for (int i = 1; i < 100_000; i++) {
+            input.append(" + 1px");
+        }
+        AST ast = parse(input.append("; }").toString());
+        FlatAST flat = FlatAST.from(ast);
+        assertEquals(ast, flat.toAST());
+
+        DiagnosticCollector diagnostics = new DiagnosticCollector();
+        new Checker(diagnostics).check(flat);
+        assertTrue(diagnostics.isEmpty(), () -> diagnostics.getDiagnostics().toString());
+        FlatAST transformed = new Evaluator().apply(flat);
+        assertEquals("p {\n  width: 100000px;\n}\n\n", new Generator().generate(transformed));
+    }
+}
@@ -0,0 +1,47 @@
+package nl.han.ica.icss.ast.literals;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColorLiteralTest {
+
+    @Test
+    void testParseAndFormat() {
+        ColorLiteral color = new ColorLiteral("#12AB9f");
+        assertEquals(0x12ab9fff, color.value);
+        assertEquals(0x12, color.red());
+        assertEquals(0xab, color.green());
+        assertEquals(0x9f, color.blue());
+        assertEquals(0xff, color.alpha());
+        assertEquals("#12ab9f", color.toHex());
+
+        assertEquals("#12ab9f80", new ColorLiteral("#12AB9F80").toHex());
+        assertEquals(new ColorLiteral("#ffffff"), new ColorLiteral("#FFFFFFFF"));
+        assertThrows(NumberFormatException.class, () -> new ColorLiteral("#fff"));
+        assertThrows(NumberFormatException.class, () -> new ColorLiteral("#gggggg"));
+    }
+
+    @Test
+    void testArithmeticSaturates() {
+        int base = ColorLiteral.parse("#80ff10");
+        assertEquals("#ffff20", ColorLiteral.format(ColorLiteral.add(base, base)));
+        assertEquals("#000000", ColorLiteral.format(ColorLiteral.subtract(base, ColorLiteral.WHITE)));
+        assertEquals("#ffff30", ColorLiteral.format(ColorLiteral.scale(base, 3, 1)));
+        assertEquals("#407f08", ColorLiteral.format(ColorLiteral.scale(base, 50, 100)));
+    }
+
+    @Test
+    void testMixLightenDarken() {
+        int red = ColorLiteral.parse("#ff0000");
+        int blue = ColorLiteral.parse("#0000ff80");
+        assertEquals("#800080c0", ColorLiteral.format(ColorLiteral.mix(red, blue, 50)));
+        assertEquals(red, ColorLiteral.mix(red, blue, -10));
+        assertEquals(blue, ColorLiteral.mix(red, blue, 200));
+
+        assertEquals("#ff8080", ColorLiteral.format(ColorLiteral.lighten(red, 50)));
+        assertEquals("#800000", ColorLiteral.format(ColorLiteral.darken(red, 50)));
+        // de doorzichtigheid blijft bij lichter en donkerder maken
+        assertEquals("#00008080", ColorLiteral.format(ColorLiteral.darken(blue, 50)));
+    }
+}
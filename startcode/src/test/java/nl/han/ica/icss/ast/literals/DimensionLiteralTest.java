@@ -0,0 +1,46 @@
+package nl.han.ica.icss.ast.literals;
+
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.ast.types.Unit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DimensionLiteralTest {
+
+    @Test
+    void testParse() {
+        assertEquals(new PixelLiteral(12), DimensionLiteral.parse("12px"));
+        assertEquals(new PercentageLiteral(50), DimensionLiteral.parse("50%"));
+        assertEquals(new ScalarLiteral(3), DimensionLiteral.parse("3"));
+        assertInstanceOf(PixelLiteral.class, DimensionLiteral.parse("12px"));
+
+        DimensionLiteral em = DimensionLiteral.parse("1.5em");
+        assertEquals(Unit.EM, em.unit);
+        assertEquals(1500, em.fixed);
+        assertEquals(ExpressionType.EM, em.getType());
+        assertEquals(Unit.REM, DimensionLiteral.parse("2rem").unit);
+        // meer dan drie decimalen wordt afgerond
+        assertEquals(1235, DimensionLiteral.parse("1.2345").fixed);
+    }
+
+    @Test
+    void testFormat() {
+        assertEquals("12px", new PixelLiteral(12).toCss());
+        assertEquals("1.5em", DimensionLiteral.parse("1.50em").toCss());
+        assertEquals("0.05rem", DimensionLiteral.parse("0.05rem").toCss());
+        assertEquals("-0.5px", DimensionLiteral.format(-500, Unit.PIXEL));
+        assertEquals("-2.25", DimensionLiteral.format(-2250, Unit.SCALAR));
+        assertEquals("Pixel literal (12)", new PixelLiteral(12).getNodeLabel());
+    }
+
+    @Test
+    void testEqualityIgnoresSubclass() {
+        DimensionLiteral plain = new DimensionLiteral(Unit.PIXEL, 10_000);
+        assertEquals(new PixelLiteral(10), plain);
+        assertEquals(plain, new PixelLiteral(10));
+        assertEquals(new PixelLiteral(10).hashCode(), plain.hashCode());
+        assertNotEquals(new PixelLiteral(10), new ScalarLiteral(10));
+        assertNotEquals(DimensionLiteral.parse("1em"), DimensionLiteral.parse("1rem"));
+    }
+}
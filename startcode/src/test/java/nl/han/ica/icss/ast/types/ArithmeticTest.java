@@ -0,0 +1,83 @@
+package nl.han.ica.icss.ast.types;
+
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.DimensionLiteral;
+import nl.han.ica.icss.ast.literals.PercentageLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.literals.ScalarLiteral;
+import org.junit.jupiter.api.Test;
+
+import static nl.han.ica.icss.ast.types.Arithmetic.Operator.*;
+import static nl.han.ica.icss.ast.types.ExpressionType.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArithmeticTest {
+
+    @Test
+    void testResultTypes() {
+        for (Unit unit : Unit.values()) {
+            assertEquals(unit.type, Arithmetic.resultType(ADD, unit.type, unit.type));
+            assertEquals(unit.type, Arithmetic.resultType(SUBTRACT, unit.type, unit.type));
+            assertEquals(unit.type, Arithmetic.resultType(MULTIPLY, unit.type, SCALAR));
+            assertEquals(unit.type, Arithmetic.resultType(MULTIPLY, SCALAR, unit.type));
+        }
+        assertEquals(UNDEFINED, Arithmetic.resultType(ADD, EM, PIXEL));
+        assertEquals(UNDEFINED, Arithmetic.resultType(MULTIPLY, PIXEL, PIXEL));
+        assertEquals(UNDEFINED, Arithmetic.resultType(MULTIPLY, EM, REM));
+        assertEquals(UNDEFINED, Arithmetic.resultType(ADD, BOOL, BOOL));
+        assertEquals(COLOR, Arithmetic.resultType(ADD, COLOR, PERCENTAGE));
+        assertEquals(COLOR, Arithmetic.resultType(MULTIPLY, PERCENTAGE, COLOR));
+        assertEquals(UNDEFINED, Arithmetic.resultType(ADD, PERCENTAGE, COLOR));
+    }
+
+    @Test
+    void testFixedPointValues() {
+        assertEquals(new PixelLiteral(15), Arithmetic.apply(ADD, new PixelLiteral(10), new PixelLiteral(5)));
+        assertEquals(new PixelLiteral(5), Arithmetic.apply(MULTIPLY, new PixelLiteral(10), DimensionLiteral.parse("0.5")));
+        assertEquals(DimensionLiteral.parse("4.5em"), Arithmetic.apply(MULTIPLY, new ScalarLiteral(3), DimensionLiteral.parse("1.5em")));
+        assertEquals(DimensionLiteral.parse("-0.25rem"),
+                Arithmetic.apply(SUBTRACT, DimensionLiteral.parse("1rem"), DimensionLiteral.parse("1.25rem")));
+        assertEquals(new PercentageLiteral(20), Arithmetic.apply(MULTIPLY, new PercentageLiteral(10), new ScalarLiteral(2)));
+        assertEquals(new ColorLiteral("#7f4020"),
+                Arithmetic.apply(MULTIPLY, new ColorLiteral("#ff8040"), new PercentageLiteral(50)));
+
+        assertNull(Arithmetic.apply(ADD, DimensionLiteral.parse("1em"), new PixelLiteral(1)));
+        assertNull(Arithmetic.apply(ADD, null, new PixelLiteral(1)));
+    }
+
+    @Test
+    void testMultiplyRoundsHalfUp() {
+        // 0.001 * 0.5 = 0.0005, een half stapje: van nul af afronden
+        assertEquals(1, Arithmetic.multiply(1, 500));
+        assertEquals(-1, Arithmetic.multiply(-1, 500));
+        assertEquals(0, Arithmetic.multiply(1, 499));
+        assertEquals(DimensionLiteral.parse("0.334px"),
+                Arithmetic.apply(MULTIPLY, DimensionLiteral.parse("0.667px"), DimensionLiteral.parse("0.5")));
+    }
+
+    @Test
+    void testOverflowSaturates() {
+        assertEquals(Long.MAX_VALUE, Arithmetic.add(Long.MAX_VALUE, 1));
+        assertEquals(Long.MIN_VALUE, Arithmetic.add(Long.MIN_VALUE, -1));
+        assertEquals(Long.MAX_VALUE, Arithmetic.subtract(Long.MAX_VALUE, -1));
+        assertEquals(Long.MIN_VALUE, Arithmetic.subtract(Long.MIN_VALUE, 1));
+        assertEquals(Long.MAX_VALUE - 1, Arithmetic.subtract(Long.MAX_VALUE, 1));
+
+        assertEquals(Long.MAX_VALUE, Arithmetic.multiply(Long.MAX_VALUE, 2 * DimensionLiteral.SCALE));
+        assertEquals(Long.MIN_VALUE, Arithmetic.multiply(Long.MAX_VALUE, -2 * DimensionLiteral.SCALE));
+        // het tussenproduct past niet in een long, de uitkomst wel
+        assertEquals(Long.MAX_VALUE / 2, Arithmetic.multiply(Long.MAX_VALUE / 2, DimensionLiteral.SCALE));
+        assertEquals(Long.MAX_VALUE / 4 + 1, Arithmetic.multiply(Long.MAX_VALUE / 2, DimensionLiteral.SCALE / 2));
+    }
+
+    @Test
+    void testLargeColourFactors() {
+        // een factor boven Integer.MAX_VALUE in vaste komma werd eerder afgekapt tot een negatief getal
+        DimensionLiteral huge = DimensionLiteral.of(Unit.SCALAR, 3_000_000_000L);
+        assertEquals(new ColorLiteral("#ffffff"), Arithmetic.apply(MULTIPLY, new ColorLiteral("#010101"), huge));
+        assertEquals(new ColorLiteral("#000000"),
+                Arithmetic.apply(MULTIPLY, DimensionLiteral.of(Unit.SCALAR, -3_000_000_000L), new ColorLiteral("#ffffff")));
+        assertEquals(new ColorLiteral("#ffffff80"),
+                Arithmetic.apply(MULTIPLY, new ColorLiteral("#01010180"), DimensionLiteral.of(Unit.PERCENTAGE, Long.MAX_VALUE)));
+    }
+}
@@ -0,0 +1,78 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnnotationsTest {
+
+    static AST parse(String input) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input);
+        return pipeline.getAST();
+    }
+
+    @Test
+    void testCheckerDoesNotChangeTheTree() {
+        AST ast = parse("Width := 10px;\np { width: Width; height: Missing; }");
+        String before = ast.toString();
+
+        Checker checker = new Checker();
+        checker.check(ast);
+        Annotations annotations = checker.getAnnotations();
+
+        assertEquals(before, ast.toString());
+        assertTrue(ast.getErrors().isEmpty());
+        assertEquals(2, annotations.getErrors().size());
+        assertEquals("Undefined variable 'Missing'", annotations.getErrors().get(0).description);
+
+        VariableAssignment width = (VariableAssignment) ast.root.body.get(0);
+        Declaration declaration = (Declaration) ((Stylerule) ast.root.body.get(1)).body.get(0);
+        assertSame(width, annotations.getBinding((VariableReference) declaration.expression));
+        assertEquals(ExpressionType.PIXEL, annotations.getTypes().get(declaration));
+        Declaration missing = (Declaration) ((Stylerule) ast.root.body.get(1)).body.get(1);
+        assertTrue(annotations.hasError(missing.expression));
+        assertNull(annotations.getBinding((VariableReference) missing.expression));
+    }
+
+    @Test
+    void testConcurrentChecksOfOneTree() throws Exception {
+        StringBuilder input = new StringBuilder("Width := 10px;\n");
+        for (int i = 0; i < 200; i++) {
+            input.append(".r").append(i).append(" { width: Width + ").append(i).append("px; color: Missing; }\n");
+        }
+        AST shared = parse(input.toString());
+        String before = shared.toString();
+
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Annotations>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(threads.submit(() -> {
+                    Checker checker = new Checker();
+                    checker.check(shared);
+                    return checker.getAnnotations();
+                }));
+            }
+            String expected = results.get(0).get().getErrors().toString();
+            for (Future<Annotations> result : results) {
+                // per regel een onbekende variabele en een ongeldige declaratie
+                assertEquals(400, result.get().getErrors().size());
+                assertEquals(expected, result.get().getErrors().toString());
+            }
+        } finally {
+            threads.shutdown();
+        }
+        assertEquals(before, shared.toString());
+        assertTrue(shared.getErrors().isEmpty());
+    }
+}
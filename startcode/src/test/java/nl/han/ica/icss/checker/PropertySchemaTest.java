@@ -0,0 +1,58 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PropertySchemaTest {
+
+    static PropertySchema load(String text) throws IOException {
+        return PropertySchema.load(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static List<String> check(String input) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input);
+        pipeline.check();
+        return pipeline.getErrors();
+    }
+
+    @Test
+    void testDefaultSchema() {
+        PropertySchema schema = PropertySchema.defaultSchema();
+        assertTrue(schema.size() > 50);
+        assertTrue(schema.allows("color", ExpressionType.COLOR));
+        assertTrue(schema.allows("Width", ExpressionType.PERCENTAGE));
+        assertTrue(schema.allows("z-index", ExpressionType.SCALAR));
+        assertFalse(schema.allows("width", ExpressionType.COLOR));
+        assertFalse(schema.isKnown("colour"));
+    }
+
+    @Test
+    void testLoad() throws IOException {
+        PropertySchema schema = load("# comment\n\ngap: PIXEL PERCENTAGE\n");
+        assertEquals(1, schema.size());
+        assertEquals(PropertySchema.mask(ExpressionType.PIXEL) | PropertySchema.mask(ExpressionType.PERCENTAGE),
+                schema.allowedTypes("gap"));
+        assertThrows(IOException.class, () -> load("gap: INCH\n"));
+        assertThrows(IOException.class, () -> load("gap PIXEL\n"));
+    }
+
+    @Test
+    void testCheckerMessages() {
+        assertEquals(List.of(), check("p { margin-top: 10px; padding: 1.5rem; z-index: 3; border-color: #ff0000; }"));
+        assertEquals(List.of("ERROR at 1:5: Property 'width' requires a size in pixels (px), percentage (%), em or rem"),
+                check("p { width: #ff0000; }"));
+        assertEquals(List.of("ERROR at 1:5: Property 'color' requires a color value (hex #rrggbb)"),
+                check("p { color: 10px; }"));
+        assertEquals(List.of("ERROR at 1:5: Property 'colour' is not allowed"),
+                check("p { colour: #ff0000; }"));
+    }
+}
@@ -0,0 +1,101 @@
+package nl.han.ica.icss.compiler;
+
+import nl.han.ica.icss.CancellationToken;
+import nl.han.ica.icss.CompilationCancelledException;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.checker.PropertySchema;
+import nl.han.ica.icss.diagnostics.Diagnostic;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncCompilerTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AsyncCompiler compiler = new AsyncCompiler(executor);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    static String rules(int count) {
+        StringBuilder input = new StringBuilder("Width := 10px;\n");
+        for (int i = 0; i < count; i++) {
+            input.append(".r").append(i).append(" { width: Width + ").append(i).append("px; height: Missing; }\n");
+        }
+        return input.toString();
+    }
+
+    @Test
+    void testCompletes() throws Exception {
+        CompilationResult result = compiler.compile("p { width: 10px; }", CompileOptions.DEFAULT, Duration.ofMinutes(1))
+                .get(1, TimeUnit.MINUTES);
+        assertTrue(result.isSuccessful());
+        assertFalse(result.isCancelled());
+    }
+
+    @Test
+    void testDeadlineReturnsPartialDiagnostics() throws Exception {
+        // de deadline ligt al in het verleden, de compile stopt bij het eerste controlepunt
+        CompilationResult early = compiler.compile(rules(10), CompileOptions.DEFAULT, Duration.ZERO)
+                .get(1, TimeUnit.MINUTES);
+        assertEquals(CancellationToken.Reason.DEADLINE, early.cancelled);
+        assertNull(early.css);
+        assertTrue(early.diagnostics.isEmpty());
+
+        CancellationToken token = CancellationToken.create();
+        CompilationResult complete = compiler.compile(rules(2_000), CompileOptions.DEFAULT, token)
+                .get(1, TimeUnit.MINUTES);
+        // zonder deadline komen alle fouten, twee per regel
+        assertNull(complete.cancelled);
+        assertEquals(4_000, complete.diagnostics.size());
+    }
+
+    @Test
+    void testCancelledDuringCheck() {
+        Compiler compiler = new Compiler();
+        AST ast = compiler.compile(rules(5_000)).sourceAST;
+
+        CancellationToken token = CancellationToken.create();
+        List<Diagnostic> found = new ArrayList<>();
+        // de sink annuleert na 100 fouten, zoals een andere thread zou doen
+        Checker checker = new Checker(diagnostic -> {
+            found.add(diagnostic);
+            if (found.size() == 100) token.cancel();
+        }, PropertySchema.defaultSchema(), token);
+
+        CompilationCancelledException e = assertThrows(CompilationCancelledException.class, () -> checker.check(ast));
+        assertEquals(CancellationToken.Reason.CANCELLED, e.reason);
+        assertTrue(found.size() >= 100 && found.size() < 1000);
+        assertEquals(found.size(), checker.getAnnotations().getErrors().size());
+
+        CompilationResult cancelled = compiler.compile(rules(5_000), CompileOptions.DEFAULT, token);
+        assertEquals(CancellationToken.Reason.CANCELLED, cancelled.cancelled);
+        assertEquals(List.of("Compilation cancelled"), cancelled.getErrors());
+    }
+
+    @Test
+    void testCancellingTheFutureCancelsTheToken() {
+        CancellationToken token = CancellationToken.create();
+        CompletableFuture<CompilationResult> future = compiler.compile(rules(1000), CompileOptions.DEFAULT, token);
+        future.cancel(true);
+        assertEquals(CancellationToken.Reason.CANCELLED, token.reason());
+    }
+
+    @Test
+    void testNoneCannotBeCancelled() {
+        assertThrows(IllegalStateException.class, CancellationToken.NONE::cancel);
+        assertNull(CancellationToken.NONE.reason());
+    }
+}
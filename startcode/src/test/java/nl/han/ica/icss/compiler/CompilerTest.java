@@ -0,0 +1,98 @@
+package nl.han.ica.icss.compiler;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.diagnostics.Diagnostic;
+import nl.han.ica.icss.events.PhaseEvent;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilerTest {
+
+    static String pipeline(String input) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input);
+        pipeline.check();
+        pipeline.transform();
+        return pipeline.generate();
+    }
+
+    static String resource(String name) throws IOException {
+        try (InputStream in = CompilerTest.class.getClassLoader().getResourceAsStream(name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void testSameOutputAsPipeline() {
+        Compiler compiler = new Compiler();
+        String input = "Width := 10px;\np { width: Width + 5px; }";
+        CompilationResult result = compiler.compile(input);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(pipeline(input), result.css);
+        assertTrue(result.diagnostics.isEmpty());
+        assertNotSame(result.sourceAST, result.ast);
+        assertTrue(result.getTiming(PhaseEvent.PARSE) > 0);
+        assertTrue(result.getTiming(PhaseEvent.GENERATE) > 0);
+    }
+
+    @Test
+    void testReusedParserStartsClean() {
+        Compiler compiler = new Compiler();
+        CompilationResult broken = compiler.compile("p {\n  width 10px;\n}");
+        assertFalse(broken.isSuccessful());
+        assertEquals(Diagnostic.Kind.SYNTAX, broken.diagnostics.get(0).kind);
+        assertEquals(2, broken.diagnostics.get(0).line);
+
+        // dezelfde thread, dus dezelfde lexer en parser
+        CompilationResult fine = compiler.compile("p { width: 10px; }");
+        assertTrue(fine.isSuccessful());
+        assertTrue(fine.diagnostics.isEmpty());
+        assertEquals(1, broken.diagnostics.size());
+    }
+
+    @Test
+    void testErrorLimit() {
+        CompilationResult result = new Compiler().compile(
+                "p {\n  width: A;\n  width: B;\n  width: C;\n}", CompileOptions.DEFAULT.withMaxErrors(2));
+        assertFalse(result.isSuccessful());
+        assertTrue(result.limitReached);
+        assertEquals("Too many errors, stopped after 2", result.getErrors().get(2));
+    }
+
+    @Test
+    void testConcurrentCompiles() throws Exception {
+        Compiler compiler = new Compiler();
+        String input = resource("level3.icss");
+        String expected = pipeline(input);
+
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<CompilationResult>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String source = i % 2 == 0 ? input : "p { width: Missing; }";
+                results.add(threads.submit(() -> compiler.compile(source)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                CompilationResult result = results.get(i).get();
+                if (i % 2 == 0) {
+                    assertEquals(expected, result.css);
+                } else {
+                    assertEquals(List.of("ERROR at 1:12: Undefined variable 'Missing'"), result.getErrors().subList(0, 1));
+                }
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+}
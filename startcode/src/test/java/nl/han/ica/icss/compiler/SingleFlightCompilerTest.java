@@ -0,0 +1,79 @@
+package nl.han.ica.icss.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightCompilerTest {
+
+    // een compiler die wacht tot de test hem vrijgeeft
+    static class BlockingCompiler extends Compiler {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public CompilationResult compile(String input, CompileOptions options) {
+            calls.incrementAndGet();
+            try {
+                release.await(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.compile(input, options);
+        }
+    }
+
+    @Test
+    void testConcurrentCallersShareOneCompile() throws Exception {
+        BlockingCompiler blocking = new BlockingCompiler();
+        SingleFlightCompiler compiler = new SingleFlightCompiler(blocking);
+        String input = "p { width: 10px; }";
+
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CompilationResult>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(threads.submit(() -> compiler.compile(input, CompileOptions.DEFAULT)));
+            }
+            // wachten tot alle volgers op de eerste compile wachten
+            while (compiler.getShared() < 7) {
+                Thread.sleep(1);
+            }
+            blocking.release.countDown();
+
+            CompilationResult first = results.get(0).get();
+            for (Future<CompilationResult> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            threads.shutdown();
+        }
+        assertEquals(1, blocking.calls.get());
+        assertEquals(1, compiler.getCompilations());
+        assertEquals(7, compiler.getShared());
+        assertEquals(0, compiler.getInFlight());
+    }
+
+    @Test
+    void testDifferentOptionsAndLaterCallsCompileAgain() {
+        SingleFlightCompiler compiler = new SingleFlightCompiler();
+        String input = "p { width: 10px; }";
+        CompilationResult first = compiler.compile(input, CompileOptions.DEFAULT);
+        CompilationResult second = compiler.compile(input, CompileOptions.DEFAULT);
+        compiler.compile(input, CompileOptions.DEFAULT.withParallel(true));
+
+        assertNotSame(first, second);
+        assertEquals(first.css, second.css);
+        assertEquals(3, compiler.getCompilations());
+        assertEquals(0, compiler.getShared());
+    }
+}
@@ -0,0 +1,66 @@
+package nl.han.ica.icss.compiler;
+
+import nl.han.ica.icss.diagnostics.Diagnostic;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingCompilerTest {
+
+    static String stream(String input, List<Diagnostic> errors) throws IOException {
+        StringWriter out = new StringWriter();
+        errors.addAll(new StreamingCompiler().compile(new StringReader(input), out));
+        return out.toString();
+    }
+
+    @Test
+    void testSameOutputAsCompiler() throws IOException {
+        for (String level : new String[]{"level0.icss", "level1.icss", "level2.icss", "level3.icss"}) {
+            String input = CompilerTest.resource(level);
+            List<Diagnostic> errors = new ArrayList<>();
+            assertEquals(new Compiler().compile(input).css, stream(input, errors), level);
+            assertTrue(errors.isEmpty(), level);
+        }
+    }
+
+    @Test
+    void testGlobalsAcrossStatements() throws IOException {
+        List<Diagnostic> errors = new ArrayList<>();
+        String css = stream("A := 1px;\np { width: A; }\nA := A + 1px;\nB := TRUE;\n"
+                + "div { if [B] { width: A; } else { width: 0px; } }", errors);
+        assertEquals("p {\n  width: 1px;\n}\n\ndiv {\n  width: 2px;\n}\n\n", css);
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    void testErrorsStopOutput() throws IOException {
+        List<Diagnostic> errors = new ArrayList<>();
+        String css = stream("p { width: 1px; }\na { width: Missing; }\ndiv { width: 2px; height: Other; }", errors);
+        assertEquals("p {\n  width: 1px;\n}\n\n", css);
+        assertEquals(2, errors.stream().filter(e -> e.message.startsWith("Undefined variable")).count());
+
+        errors.clear();
+        stream("p { width 1px; }\n} a { width: 2px; }", errors);
+        assertFalse(errors.isEmpty());
+        assertEquals(Diagnostic.Kind.SYNTAX, errors.get(0).kind);
+    }
+
+    @Test
+    void testManyStatements() throws IOException {
+        StringBuilder input = new StringBuilder("W := 1px;\n");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 50_000; i++) {
+            input.append(".c").append(i).append(" { width: W + ").append(i).append("px; }\n");
+            expected.append(".c").append(i).append(" {\n  width: ").append(i + 1).append("px;\n}\n\n");
+        }
+        List<Diagnostic> errors = new ArrayList<>();
+        assertEquals(expected.toString(), stream(input.toString(), errors));
+        assertTrue(errors.isEmpty());
+    }
+}
@@ -0,0 +1,180 @@
+package nl.han.ica.icss.compiler;
+
+import nl.han.ica.icss.CancellationToken;
+import nl.han.ica.icss.ContentHash;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThemeCacheTest {
+
+    static final String BASE = "Accent := #ff0000;\nWidth := 10px;\np { color: Accent; width: Width + 5px; }";
+
+    @Test
+    void testOverridesAndHits() {
+        ThemeCache cache = new ThemeCache(1 << 20);
+        Map<String, Literal> tenant = Map.of("Accent", new ColorLiteral("#00ff00"), "Width", new PixelLiteral(20));
+
+        assertEquals("p {\n  color: #ff0000;\n  width: 15px;\n}\n\n", cache.get(BASE, Map.of()));
+        String themed = cache.get(BASE, tenant);
+        assertEquals("p {\n  color: #00ff00;\n  width: 25px;\n}\n\n", themed);
+        assertSame(themed, cache.get(BASE, Map.of("Width", new PixelLiteral(20), "Accent", new ColorLiteral("#00ff00"))));
+
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1.0 / 3, cache.getHitRate(), 1e-9);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        String css = new ThemeCache(1 << 20).get(BASE, Map.of());
+        long base = ThemeCache.estimateBytes(new Compiler().parse(BASE).sourceAST);
+        // ruimte voor de basis en precies twee varianten
+        ThemeCache cache = new ThemeCache(base + 4L * css.length() + 1);
+        cache.get(BASE, Map.of("Width", new PixelLiteral(1)));
+        cache.get(BASE, Map.of("Width", new PixelLiteral(2)));
+        cache.get(BASE, Map.of("Width", new PixelLiteral(1)));
+        cache.get(BASE, Map.of("Width", new PixelLiteral(3)));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.getBytes() <= base + 4L * css.length() + 1);
+        cache.get(BASE, Map.of("Width", new PixelLiteral(1)));
+        // variant 1 was net gebruikt, dus variant 2 is eruit gegaan
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    void testTtlAndInvalidate() throws InterruptedException {
+        ThemeCache expiring = new ThemeCache(new Compiler(), 1 << 20, Duration.ofMillis(1));
+        expiring.get(BASE, Map.of());
+        Thread.sleep(5);
+        expiring.get(BASE, Map.of());
+        assertEquals(0, expiring.getHits());
+        assertEquals(1, expiring.size());
+
+        ThemeCache cache = new ThemeCache(1 << 20);
+        cache.get(BASE, Map.of());
+        cache.get(BASE, Map.of("Width", new PixelLiteral(1)));
+        cache.get("p { width: 1px; }", Map.of());
+        assertEquals(2, cache.invalidate(ContentHash.of(BASE)));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testBaseTreesCountTowardsTheBudget() {
+        ThemeCache cache = new ThemeCache(1 << 20);
+        String css = cache.get(BASE, Map.of());
+        long base = ThemeCache.estimateBytes(new Compiler().parse(BASE).sourceAST);
+        assertTrue(base > 0);
+        assertEquals(base + 2L * css.length(), cache.getBytes());
+
+        cache.invalidate(ContentHash.of(BASE));
+        assertEquals(0, cache.getBytes());
+
+        // te klein voor de basis: alleen de variant bewaren
+        ThemeCache tiny = new ThemeCache(base - 1);
+        assertEquals(css, tiny.get(BASE, Map.of()));
+        assertEquals(2L * css.length(), tiny.getBytes());
+        assertEquals(1, tiny.size());
+    }
+
+    // een compiler die bij de eerste compile wacht tot de test hem vrijgeeft
+    static class BlockingCompiler extends Compiler {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public CompilationResult compile(AST source, CompileOptions options, CancellationToken cancellation) {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.compile(source, options, cancellation);
+        }
+    }
+
+    @Test
+    void testConcurrentMissesShareOneCompile() throws Exception {
+        BlockingCompiler blocking = new BlockingCompiler();
+        ThemeCache cache = new ThemeCache(blocking, 1 << 20, null);
+        Map<String, Literal> tenant = Map.of("Width", new PixelLiteral(20));
+
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(threads.submit(() -> cache.get(BASE, tenant)));
+            }
+            // wachten tot de andere drie op de eerste compile wachten
+            while (cache.getShared() < 3) {
+                Thread.sleep(1);
+            }
+            blocking.release.countDown();
+
+            String first = results.get(0).get();
+            for (Future<String> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            threads.shutdown();
+        }
+        assertEquals(1, blocking.calls.get());
+        assertEquals(4, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testMissStartedBeforeInvalidateIsNotStored() throws Exception {
+        BlockingCompiler blocking = new BlockingCompiler();
+        ThemeCache cache = new ThemeCache(blocking, 1 << 20, null);
+
+        ExecutorService threads = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> stale = threads.submit(() -> cache.get(BASE, Map.of()));
+            blocking.started.await(1, TimeUnit.MINUTES);
+            cache.invalidate(ContentHash.of(BASE));
+            blocking.release.countDown();
+
+            assertEquals("p {\n  color: #ff0000;\n  width: 15px;\n}\n\n", stale.get());
+        } finally {
+            threads.shutdown();
+        }
+        // noch de oude basis noch de variant staat nog in de cache
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+        cache.get(BASE, Map.of());
+        assertEquals(2, blocking.calls.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testErrors() {
+        ThemeCache cache = new ThemeCache(1 << 20);
+        assertThrows(IllegalArgumentException.class, () -> cache.get("p { width 1px; }", Map.of()));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> cache.get(BASE, Map.of("Width", new ColorLiteral("#000000"))));
+        assertTrue(e.getMessage().contains("ERROR"));
+        assertEquals(0, cache.size());
+    }
+}
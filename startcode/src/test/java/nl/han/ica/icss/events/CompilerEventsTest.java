@@ -0,0 +1,79 @@
+package nl.han.ica.icss.events;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import nl.han.ica.icss.Pipeline;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilerEventsTest {
+
+    static void compile() {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString("Width := 10px;\n.menu { width: Width + 5px; }\np { color: #ff0000; }");
+        assertTrue(pipeline.check());
+        pipeline.transform();
+        pipeline.generate();
+    }
+
+    @Test
+    void testTemplateRecordsPhases(@TempDir Path directory) throws IOException, ParseException {
+        Configuration template;
+        try (Reader reader = new InputStreamReader(
+                getClass().getClassLoader().getResourceAsStream("icss.jfc"), StandardCharsets.UTF_8)) {
+            template = Configuration.create(reader);
+        }
+
+        Path file = directory.resolve("icss.jfr");
+        try (Recording recording = new Recording(template)) {
+            // elke stylerule is hier sneller dan de drempel uit de template
+            recording.enable(SlowRuleEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            compile();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        List<String> phases = events.stream()
+                .filter(e -> e.getEventType().getName().equals("nl.han.ica.icss.Phase"))
+                .map(e -> e.getString("phase"))
+                .collect(Collectors.toList());
+        assertEquals(List.of("lex", "parse", "walk", "check", "transform", "generate"), phases);
+
+        List<RecordedEvent> rules = events.stream()
+                .filter(e -> e.getEventType().getName().equals("nl.han.ica.icss.SlowRule"))
+                .collect(Collectors.toList());
+        assertEquals(6, rules.size());
+        assertTrue(rules.stream().anyMatch(e -> e.getString("selectors").equals(".menu")
+                && e.getString("phase").equals("check") && e.getInt("line") == 2));
+    }
+
+    @Test
+    void testDisabledByDefault(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("default.jfr");
+        try (Recording recording = new Recording()) {
+            recording.start();
+            assertFalse(SlowRuleEvent.isTypeEnabled());
+            compile();
+            recording.stop();
+            recording.dump(file);
+        }
+        assertTrue(RecordingFile.readAllEvents(file).stream()
+                .noneMatch(e -> e.getEventType().getName().startsWith("nl.han.ica.icss.")));
+    }
+}
@@ -0,0 +1,86 @@
+package nl.han.ica.icss.generator;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.compiler.CompilationResult;
+import nl.han.ica.icss.compiler.Compiler;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeneratorTest {
+
+    static AST generatedStylesheet(int rules) {
+        Stylesheet stylesheet = new Stylesheet();
+        for (int i = 0; i < rules; i++) {
+            stylesheet.addChild((new Stylerule())
+                    .addChild(new ClassSelector(".rule" + i))
+                    .addChild((new Declaration("width"))
+                            .addChild(new PixelLiteral(i)))
+                    .addChild((new Declaration("color"))
+                            .addChild(new ColorLiteral("#12345" + (i % 10)))));
+        }
+        return new AST(stylesheet);
+    }
+
+    @Test
+    void testParallelMatchesSequential() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int rules : new int[] { 0, 1, 63, 64, 65, 1000 }) {
+                AST ast = generatedStylesheet(rules);
+                assertEquals(new Generator().generate(ast), new Generator(pool).generate(ast));
+            }
+            AST level0 = Fixtures.uncheckedLevel0();
+            assertEquals(new Generator().generate(level0), new Generator(pool).generate(level0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testChannelOutputMatchesString(@TempDir Path dir) throws IOException {
+        AST ast = generatedStylesheet(1000);
+        String expected = new Generator().generate(ast);
+
+        Path file = dir.resolve("output.css");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long written = new Generator(pool).generate(ast, channel);
+            assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, written);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(expected, Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    // de checker geeft een if een eigen scope, de evaluator inlinet de if in de regel
+    @Test
+    void testValueTypeChangedInsideIf() {
+        for (String value : new String[] { "#ff0000", "TRUE" }) {
+            String input = "p { X := 10px; if[TRUE] { X := " + value + "; } width: X; }";
+            CompilationResult result = new Compiler().compile(input);
+            assertTrue(result.isSuccessful(), () -> result.getErrors().toString());
+            assertEquals("p {\n  width: " + value.toLowerCase() + ";\n}\n\n", result.css);
+
+            Pipeline pipeline = new Pipeline();
+            pipeline.parseString(input);
+            assertTrue(pipeline.check());
+            pipeline.transform();
+            assertEquals(result.css, pipeline.generate());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package nl.han.ica.icss.imports;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.Import;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModuleCompilerTest {
+
+    static Set<Path> files(List<Module> modules) {
+        Set<Path> files = new HashSet<>();
+        for (Module module : modules) {
+            files.add(module.file.getFileName());
+        }
+        return files;
+    }
+
+    @Test
+    void testImportedVariables(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("colors.icss"), "Main := #ff0000;\nWide := 100px;");
+        Files.writeString(dir.resolve("theme.icss"), "@import \"colors.icss\";\na { color: Main; width: Wide + 10px; }");
+
+        Module theme = new ModuleCompiler().compile(dir.resolve("theme.icss"));
+        assertTrue(theme.errors.isEmpty(), theme.errors.toString());
+        assertEquals("a {\n  color: #ff0000;\n  width: 110px;\n}\n\n", theme.css);
+    }
+
+    @Test
+    void testMissingImportAndCycle(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("missing.icss"), "@import \"nope.icss\";");
+        Files.writeString(dir.resolve("a.icss"), "@import \"b.icss\";");
+        Files.writeString(dir.resolve("b.icss"), "@import \"a.icss\";");
+
+        ModuleCompiler compiler = new ModuleCompiler();
+        assertTrue(compiler.compile(dir.resolve("missing.icss")).hasErrors());
+        assertTrue(compiler.compile(dir.resolve("a.icss")).hasErrors());
+    }
+
+    @Test
+    void testRebuildsOnlyDependents(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("colors.icss"), "Main := #ff0000;");
+        Files.writeString(dir.resolve("base.icss"), "@import \"colors.icss\";\nBack := Main;");
+        Files.writeString(dir.resolve("a.icss"), "@import \"base.icss\";\na { color: Back; }");
+        Files.writeString(dir.resolve("b.icss"), "@import \"colors.icss\";\nb { color: Main; }");
+        Files.writeString(dir.resolve("c.icss"), "c { color: #000000; }");
+
+        ModuleCompiler compiler = new ModuleCompiler();
+        for (String name : new String[] { "a.icss", "b.icss", "c.icss" }) {
+            assertFalse(compiler.compile(dir.resolve(name)).hasErrors());
+        }
+
+        // ongewijzigde inhoud: niets te doen
+        assertTrue(compiler.rebuild(dir.resolve("colors.icss")).isEmpty());
+
+        Files.writeString(dir.resolve("colors.icss"), "Main := #00ff00;");
+        List<Module> rebuilt = compiler.rebuild(dir.resolve("colors.icss"));
+        assertEquals(Set.of(Path.of("colors.icss"), Path.of("base.icss"), Path.of("a.icss"), Path.of("b.icss")), files(rebuilt));
+        assertEquals("a {\n  color: #00ff00;\n}\n\n", compiler.compile(dir.resolve("a.icss")).css);
+
+        // imports komen voor de bestanden die ze importeren
+        List<Path> order = rebuilt.stream().map(module -> module.file.getFileName()).collect(Collectors.toList());
+        assertTrue(order.indexOf(Path.of("base.icss")) < order.indexOf(Path.of("a.icss")));
+    }
+
+    @Test
+    void testConcurrentImportersShareOneBuild(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve("colors.icss"), "Main := #ff0000;");
+        for (int i = 0; i < 8; i++) {
+            Files.writeString(dir.resolve("page" + i + ".icss"), "@import \"colors.icss\";\np { color: Main; }");
+        }
+
+        ModuleCompiler compiler = new ModuleCompiler();
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Module>> pages = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Path page = dir.resolve("page" + i + ".icss");
+                pages.add(threads.submit(() -> {
+                    start.await();
+                    return compiler.compile(page);
+                }));
+            }
+            start.countDown();
+            for (Future<Module> page : pages) {
+                assertEquals("p {\n  color: #ff0000;\n}\n\n", page.get(1, TimeUnit.MINUTES).css);
+            }
+        } finally {
+            threads.shutdown();
+        }
+        // elke pagina één keer, de gedeelde import ook maar één keer
+        assertEquals(9, compiler.getBuilds());
+    }
+
+    @Test
+    void testConcurrentCycleDoesNotDeadlock(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve("a.icss"), "@import \"b.icss\";\nA := 1px;");
+        Files.writeString(dir.resolve("b.icss"), "@import \"a.icss\";\nB := 2px;");
+
+        for (int round = 0; round < 20; round++) {
+            ModuleCompiler compiler = new ModuleCompiler();
+            ExecutorService threads = Executors.newFixedThreadPool(2);
+            try {
+                Future<Module> a = threads.submit(() -> compiler.compile(dir.resolve("a.icss")));
+                Future<Module> b = threads.submit(() -> compiler.compile(dir.resolve("b.icss")));
+                assertTrue(a.get(1, TimeUnit.MINUTES).hasErrors());
+                assertTrue(b.get(1, TimeUnit.MINUTES).hasErrors());
+            } finally {
+                threads.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void testImportersGetTheirOwnLiterals(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("colors.icss"), "Main := #ff0000;");
+        Files.writeString(dir.resolve("theme.icss"), "@import \"colors.icss\";\na { color: Main; }");
+
+        ModuleCompiler compiler = new ModuleCompiler();
+        Module theme = compiler.compile(dir.resolve("theme.icss"));
+        Module colors = compiler.compile(dir.resolve("colors.icss"));
+        assertEquals(colors.exports.get("Main"), theme.exports.get("Main"));
+        assertNotSame(colors.exports.get("Main"), theme.exports.get("Main"));
+    }
+
+    @Test
+    void testPlainPipelineRejectsImports() {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString("@import \"colors.icss\";\np { width: 1px; }");
+        assertFalse(pipeline.check());
+        assertTrue(pipeline.getErrors().get(0).contains("Imports need the ModuleCompiler"), pipeline.getErrors().toString());
+    }
+
+    @Test
+    void testImportErrorsStayOutOfTheTree(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("theme.icss"), "@import \"nope.icss\";\np { width: 1px; }");
+
+        Module theme = new ModuleCompiler().compile(dir.resolve("theme.icss"));
+        // één keer gemeld, niet nog eens door de checker
+        assertEquals(1, theme.errors.size(), theme.errors.toString());
+        assertTrue(theme.errors.get(0).contains("'nope.icss' does not exist"), theme.errors.toString());
+        Import anImport = (Import) theme.ast.root.body.get(0);
+        assertFalse(anImport.hasError());
+        assertTrue(theme.ast.getErrors().isEmpty());
+    }
+}
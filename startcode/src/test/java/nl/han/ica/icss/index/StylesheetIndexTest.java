@@ -0,0 +1,105 @@
+package nl.han.ica.icss.index;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StylesheetIndexTest {
+
+    static AST parse(String input) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input);
+        return pipeline.getAST();
+    }
+
+    static final String INPUT = "LinkColor := #0000ff;\n"
+            + "UseLink := TRUE;\n"
+            + ".menu, #nav { color: LinkColor; }\n"
+            + "a { if[UseLink] { background-color: LinkColor; } else { background-color: #ffffff; } }\n"
+            + ".menu { width: 10px; }\n";
+
+    @Test
+    void testQueries() {
+        AST ast = parse(INPUT);
+        StylesheetIndex index = new StylesheetIndex(ast);
+        Stylerule menu = (Stylerule) ast.root.body.get(2);
+        Stylerule link = (Stylerule) ast.root.body.get(3);
+        Stylerule menuWidth = (Stylerule) ast.root.body.get(4);
+
+        assertEquals(2, index.rulesWithSelector(".menu").size());
+        assertTrue(index.rulesWithSelector(".menu").contains(menuWidth));
+        assertEquals(Set.of(), index.rulesWithSelector(".footer"));
+
+        Set<Declaration> backgrounds = index.declarationsOf("background-color");
+        assertEquals(2, backgrounds.size());
+        for (Declaration declaration : backgrounds) {
+            assertSame(link, index.ruleOf(declaration));
+        }
+
+        assertEquals(2, index.rulesUsingVariable("LinkColor").size());
+        assertTrue(index.rulesUsingVariable("UseLink").contains(link));
+        assertFalse(index.rulesUsingVariable("LinkColor").contains(menuWidth));
+        assertSame(ast.root.body.get(0), index.assignmentsOf("LinkColor").iterator().next());
+        assertTrue(index.rulesUsingVariable("LinkColor").contains(menu));
+    }
+
+    @Test
+    void testIncrementalUpdates() {
+        AST ast = parse(INPUT);
+        StylesheetIndex index = new StylesheetIndex(ast);
+        Stylerule menu = (Stylerule) ast.root.body.get(2);
+        Declaration color = (Declaration) menu.body.get(0);
+
+        // bewerken: selector en waarde veranderen
+        menu.selectors.set(0, new ClassSelector(".sidebar"));
+        color.expression = new ColorLiteral("#ff0000");
+        index.changed(menu);
+        assertEquals(1, index.rulesWithSelector(".menu").size());
+        assertTrue(index.rulesWithSelector(".sidebar").contains(menu));
+        assertFalse(index.rulesUsingVariable("LinkColor").contains(menu));
+        assertSame(menu, index.ruleOf(color));
+
+        ast.root.body.remove(menu);
+        index.removed(menu);
+        assertFalse(index.contains(menu));
+        assertEquals(Set.of(), index.rulesWithSelector(".sidebar"));
+        assertNull(index.ruleOf(color));
+
+        Stylerule added = (Stylerule) parse(".footer { color: LinkColor; }").root.body.get(0);
+        ast.root.body.add(added);
+        index.added(added);
+        assertTrue(index.rulesWithSelector(".footer").contains(added));
+        assertTrue(index.rulesUsingVariable("LinkColor").contains(added));
+    }
+
+    @Test
+    void testDeeplyNestedIfClauses() {
+        Declaration inner = (Declaration) new Declaration("width").addChild(new VariableReference("Deep"));
+        ASTNode node = inner;
+        for (int i = 0; i < 100_000; i++) {
+            ArrayList<ASTNode> body = new ArrayList<>();
+            body.add(node);
+            node = i % 2 == 0
+                    ? new IfClause(new VariableReference("Use"), body)
+                    : new IfClause(new BoolLiteral(false), new ArrayList<>(), new ElseClause(body));
+        }
+        ArrayList<ASTNode> ruleBody = new ArrayList<>();
+        ruleBody.add(node);
+        Stylerule rule = new Stylerule(new TagSelector("p"), ruleBody);
+
+        StylesheetIndex index = new StylesheetIndex();
+        index.added(rule);
+        assertSame(rule, index.ruleOf(inner));
+        assertEquals(Set.of(rule), index.rulesUsingVariable("Deep"));
+        assertEquals(Set.of(rule), index.rulesUsingVariable("Use"));
+    }
+}
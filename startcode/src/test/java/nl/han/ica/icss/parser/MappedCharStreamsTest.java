@@ -0,0 +1,43 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.Pipeline;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedCharStreamsTest {
+
+    @Test
+    void testDecodesAcrossMappingBoundaries(@TempDir Path dir) throws IOException {
+        // 1, 2, 3 en 4 byte tekens, zodat elke grens wel eens midden in een teken valt
+        String text = "p { color: #ffffff; } /* aé€😀 */\n".repeat(50);
+        Path file = dir.resolve("input.icss");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+
+        for (long mappingSize : new long[] { 4, 5, 7, 64, 1000, 1L << 30 }) {
+            CharStream stream = MappedCharStreams.fromPath(file, mappingSize);
+            assertEquals(text.codePointCount(0, text.length()), stream.size());
+            assertEquals(text, stream.getText(Interval.of(0, stream.size() - 1)));
+        }
+    }
+
+    @Test
+    void testParseFileMatchesFixture() throws IOException, URISyntaxException {
+        Path file = Paths.get(getClass().getClassLoader().getResource("level3.icss").toURI());
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseFile(file);
+
+        assertTrue(pipeline.isParsed());
+        assertEquals(Fixtures.uncheckedLevel3(), pipeline.getAST());
+    }
+}
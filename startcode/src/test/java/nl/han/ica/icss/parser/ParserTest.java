@@ -4,6 +4,9 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
 import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.selectors.IdSelector;
 
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.misc.*;
@@ -19,7 +22,10 @@ class ParserTest {
         ClassLoader classLoader = this.getClass().getClassLoader();
 
         InputStream inputStream = classLoader.getResourceAsStream(resource);
-        CharStream charStream = CharStreams.fromStream(inputStream);
+        return parse(CharStreams.fromStream(inputStream));
+    }
+
+    AST parse(CharStream charStream) {
         ICSSLexer lexer = new ICSSLexer(charStream);
 
         CommonTokenStream tokens = new CommonTokenStream(lexer);
@@ -81,4 +87,17 @@ class ParserTest {
         AST exp = Fixtures.uncheckedLevel3();
         assertEquals(exp,sut);
     }
-}
\ No newline at end of file
+    @Test
+    void testHexLikeIdSelectors() {
+        AST sut = parse(CharStreams.fromString("#deadbeef { width: 10px; }\n#ABCDEF { color: #deadbeef; }"));
+
+        Stylesheet exp = new Stylesheet();
+        exp.addChild((new Stylerule())
+                .addChild(new IdSelector("#deadbeef"))
+                .addChild((new Declaration("width")).addChild(new PixelLiteral(10))));
+        exp.addChild((new Stylerule())
+                .addChild(new IdSelector("#abcdef"))
+                .addChild((new Declaration("color")).addChild(new ColorLiteral("#deadbeef"))));
+        assertEquals(new AST(exp), sut);
+    }
+}
@@ -0,0 +1,62 @@
+package nl.han.ica.icss.resolve;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StyleResolverTest {
+
+    static StyleResolver compile(String input) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input);
+        assertTrue(pipeline.check(), pipeline.getErrors().toString());
+        pipeline.transform();
+        return new StyleResolver(pipeline.getAST());
+    }
+
+    @Test
+    void testSpecificityAndOrder() {
+        StyleResolver resolver = compile("Wide := TRUE;\n"
+                + "#main { color: #000001; }\n"
+                + ".box { color: #000002; width: 10px; }\n"
+                + "p { color: #000003; width: 20px; height: 5px; }\n"
+                + ".box { width: 30px; }\n"
+                + "p, .other { if[Wide] { height: 50%; } }\n");
+
+        ResolvedStyle style = resolver.resolve(new Element("p", "main", "box"));
+        assertEquals(new ColorLiteral("#000001"), style.get("color"));
+        // zelfde specificiteit: de laatste in de bron wint
+        assertEquals(new PixelLiteral(30), style.get("width"));
+        assertEquals("[color, width, height]", style.toMap().keySet().toString());
+
+        ResolvedStyle plain = resolver.resolve(new Element("p", null));
+        assertEquals(new ColorLiteral("#000003"), plain.get("color"));
+        assertEquals(new PixelLiteral(20), plain.get("width"));
+
+        ResolvedStyle other = resolver.resolve(new Element("div", null, "other"));
+        assertNull(other.get("color"));
+        assertEquals(1, other.toMap().size());
+        // een property die nergens in de stylesheet staat
+        assertNull(style.get("margin"));
+    }
+
+    @Test
+    void testMergedBucketsKeepSourceOrderAcrossClasses() {
+        StyleResolver resolver = compile(".a { width: 1px; }\n.b { width: 2px; height: 2px; }\n.a { width: 3px; }\n.b { color: #000001; }\n");
+        ResolvedStyle style = resolver.resolve(new Element("div", null, "b", "a"));
+        assertEquals(new PixelLiteral(3), style.get("width"));
+        assertEquals(new PixelLiteral(2), style.get("height"));
+        assertEquals(new ColorLiteral("#000001"), style.get("color"));
+        assertEquals(new PixelLiteral(2), resolver.resolve(new Element("div", null, "b")).get("width"));
+    }
+
+    @Test
+    void testHigherSpecificitySelectorOfSameRuleWins() {
+        StyleResolver resolver = compile("p, .a { width: 10px; }\n.a { width: 20px; }\np { width: 30px; }\n");
+        assertEquals(new PixelLiteral(20), resolver.resolve(new Element("p", null, "a")).get("width"));
+        assertEquals(new PixelLiteral(30), resolver.resolve(new Element("p", null)).get("width"));
+    }
+}
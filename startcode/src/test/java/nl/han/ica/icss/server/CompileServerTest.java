@@ -0,0 +1,177 @@
+package nl.han.ica.icss.server;
+
+import nl.han.ica.icss.compiler.CompilationResult;
+import nl.han.ica.icss.compiler.CompileOptions;
+import nl.han.ica.icss.compiler.Compiler;
+import nl.han.ica.icss.compiler.SingleFlightCompiler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompileServerTest {
+
+    private CompileServer server;
+    private HttpClient client;
+    private URI uri;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new CompileServer(0, 2, 4);
+        server.start();
+        client = HttpClient.newHttpClient();
+        uri = URI.create("http://localhost:" + server.getPort() + CompileServer.PATH);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop();
+    }
+
+    HttpResponse<String> post(String body, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString(body));
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testCompileAndNotModified() throws IOException, InterruptedException {
+        String input = "Width := 10px;\np { width: Width + 5px; }";
+
+        HttpResponse<String> first = post(input, null);
+        assertEquals(200, first.statusCode());
+        assertEquals("p {\n  width: 15px;\n}\n\n", first.body());
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+
+        HttpResponse<String> second = post(input, etag);
+        assertEquals(304, second.statusCode());
+        assertEquals(etag, second.headers().firstValue("ETag").orElseThrow());
+    }
+
+    @Test
+    void testErrorsAsJson() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("p { width: Unknown; }", null);
+        assertEquals(422, response.statusCode());
+        assertEquals("application/json", response.headers().firstValue("Content-Type").orElseThrow());
+        assertTrue(response.body().startsWith("{\"errors\":[\""));
+        assertTrue(response.body().contains("Unknown"));
+    }
+
+    @Test
+    void testBodyTooLarge() throws IOException, InterruptedException {
+        server.setMaxBodyBytes(64);
+        String input = "p { width: 10px; }\n".repeat(20);
+
+        // met Content-Length wordt de body niet eens gelezen
+        assertEquals(413, post(input, null).statusCode());
+        // chunked, zonder lengte vooraf: er wordt maar tot net boven de grens gelezen
+        HttpRequest chunked = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofInputStream(
+                () -> new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)))).build();
+        assertEquals(413, client.send(chunked, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        // precies op de grens mag nog
+        assertEquals(200, post(String.format("%-64s", "p { width: 10px; }"), null).statusCode());
+        assertThrows(IllegalArgumentException.class, () -> server.setMaxBodyBytes(0));
+    }
+
+    @Test
+    void testErrorsToJsonEscapes() {
+        assertEquals("{\"errors\":[\"a \\\"b\\\"\\n\"]}", CompileServer.errorsToJson(java.util.List.of("a \"b\"\n")));
+    }
+
+    @Test
+    void testWildcardOnlyMatchesSuccessfulCompiles() throws IOException, InterruptedException {
+        assertEquals(422, post("p { width: Unknown; }", "*").statusCode());
+        HttpResponse<String> response = post("p { width: 1px; }", "*");
+        assertEquals(304, response.statusCode());
+        assertTrue(response.headers().firstValue("ETag").isPresent());
+    }
+
+    @Test
+    void testListensOnLoopbackByDefault() {
+        assertTrue(server.getAddress().getAddress().isLoopbackAddress());
+    }
+
+    // een compiler die wacht tot de test hem vrijgeeft, of faalt als daarom gevraagd wordt
+    static class BlockingCompiler extends Compiler {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public CompilationResult compile(String input, CompileOptions options) {
+            if (input.equals("fail")) throw new IllegalStateException("compile failed");
+            try {
+                release.await(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.compile(input, options);
+        }
+    }
+
+    @Test
+    void testBusyWhenQueueIsFull() throws Exception {
+        BlockingCompiler blocking = new BlockingCompiler();
+        CompileServer busy = new CompileServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, 1,
+                new SingleFlightCompiler(blocking));
+        busy.start();
+        try {
+            URI busyUri = URI.create("http://localhost:" + busy.getPort() + CompileServer.PATH);
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            // één verzoek op de worker, één in de wachtrij, het derde wordt geweigerd
+            for (int i = 0; i < 3; i++) {
+                HttpRequest request = HttpRequest.newBuilder(busyUri)
+                        .POST(HttpRequest.BodyPublishers.ofString("p { width: " + i + "px; }")).build();
+                responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            }
+            HttpResponse<String> rejected = (HttpResponse<String>) CompletableFuture.anyOf(
+                    responses.toArray(new CompletableFuture[0])).get(1, TimeUnit.MINUTES);
+            assertEquals(503, rejected.statusCode());
+            assertEquals("1", rejected.headers().firstValue("Retry-After").orElseThrow());
+
+            blocking.release.countDown();
+            int ok = 0;
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                if (response.get().statusCode() == 200) ok++;
+            }
+            assertEquals(2, ok);
+        } finally {
+            busy.stop();
+        }
+    }
+
+    @Test
+    void testInternalErrorGetsResponse() throws Exception {
+        CompileServer failing = new CompileServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, 1,
+                new SingleFlightCompiler(new BlockingCompiler()));
+        failing.start();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + failing.getPort() + CompileServer.PATH))
+                    .POST(HttpRequest.BodyPublishers.ofString("fail")).build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            assertEquals(500, response.statusCode());
+            assertEquals("Internal server error", response.body());
+            assertTrue(response.headers().firstValue("ETag").isEmpty());
+        } finally {
+            failing.stop();
+        }
+    }
+}
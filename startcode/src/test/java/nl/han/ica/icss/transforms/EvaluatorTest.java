@@ -0,0 +1,197 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluatorTest {
+
+    void assertParallelMatchesSequential(Supplier<AST> fixture) {
+        AST sequential = new Evaluator().apply(fixture.get());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        AST parallel;
+        try {
+            parallel = new Evaluator(pool).apply(fixture.get());
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(sequential, parallel);
+        assertEquals(new Generator().generate(sequential), new Generator().generate(parallel));
+    }
+
+    /*
+     * Many rules with the global variables reassigned in between, so every rule must see
+     * the scope as it was at its own position in the source.
+     */
+    static AST generatedStylesheet() {
+        Stylesheet stylesheet = new Stylesheet();
+        for (int i = 0; i < 500; i++) {
+            if (i % 7 == 0) {
+                stylesheet.addChild((new VariableAssignment())
+                        .addChild(new VariableReference("Width"))
+                        .addChild(new PixelLiteral(i)));
+                stylesheet.addChild((new VariableAssignment())
+                        .addChild(new VariableReference("Wide"))
+                        .addChild(new BoolLiteral(i % 2 == 0)));
+            }
+            stylesheet.addChild((new Stylerule())
+                    .addChild(new ClassSelector(".rule" + i))
+                    .addChild((new Declaration("width"))
+                            .addChild((new AddOperation())
+                                    .addChild(new VariableReference("Width"))
+                                    .addChild(new PixelLiteral(i))))
+                    .addChild((new IfClause())
+                            .addChild(new VariableReference("Wide"))
+                            .addChild((new Declaration("height"))
+                                    .addChild(new VariableReference("Width")))
+                            .addChild((new ElseClause())
+                                    .addChild((new Declaration("height"))
+                                            .addChild(new PixelLiteral(1))))));
+        }
+        return new AST(stylesheet);
+    }
+
+    @Test
+    void testParallelLevel0() {
+        assertParallelMatchesSequential(Fixtures::uncheckedLevel0);
+    }
+    @Test
+    void testParallelLevel1() {
+        assertParallelMatchesSequential(Fixtures::uncheckedLevel1);
+    }
+    @Test
+    void testParallelLevel2() {
+        assertParallelMatchesSequential(Fixtures::uncheckedLevel2);
+    }
+    @Test
+    void testParallelLevel3() {
+        assertParallelMatchesSequential(Fixtures::uncheckedLevel3);
+    }
+    @Test
+    void testParallelGenerated() {
+        assertParallelMatchesSequential(EvaluatorTest::generatedStylesheet);
+    }
+
+    @Test
+    void testCheckerRecordsTypes() {
+        AST ast = generatedStylesheet();
+        Checker checker = new Checker();
+        checker.check(ast);
+        Stylerule rule = (Stylerule) ast.root.body.get(2);
+        Declaration width = (Declaration) rule.body.get(0);
+        assertEquals(ExpressionType.PIXEL, checker.getTypes().get(width));
+        assertEquals(ExpressionType.PIXEL, checker.getTypes().get(width.expression));
+        assertEquals(ExpressionType.PIXEL, checker.getTypes().get(((AddOperation) width.expression).lhs));
+    }
+    @Test
+    void testIfInliningKeepsOrder() {
+        AST ast = new Evaluator().apply(IfInliningBenchmark.ruleWithConditionals(4));
+
+        Stylerule rule = (Stylerule) ast.root.body.get(0);
+        assertEquals(8, rule.body.size());
+        for (int i = 0; i < 4; i++) {
+            Declaration width = (Declaration) rule.body.get(2 * i);
+            Declaration height = (Declaration) rule.body.get(2 * i + 1);
+            assertEquals("width", width.property.name);
+            assertEquals(new PixelLiteral(i), width.expression);
+            assertEquals("height", height.property.name);
+            assertEquals(new PixelLiteral(i), height.expression);
+        }
+    }
+    @Test
+    void testSourceIsNotChanged() {
+        AST source = Fixtures.uncheckedLevel3();
+        AST first = new Evaluator().apply(source);
+        assertEquals(Fixtures.uncheckedLevel3(), source);
+        assertNotEquals(source, first);
+
+        // dezelfde bron opnieuw transformeren geeft hetzelfde resultaat
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            AST second = new Evaluator(pool).apply(source);
+            assertEquals(first, second);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    @Test
+    void testUnchangedNodesAreShared() {
+        Stylerule literalOnly = (Stylerule) (new Stylerule())
+                .addChild(new ClassSelector(".plain"))
+                .addChild((new Declaration("width")).addChild(new PixelLiteral(10)));
+        Declaration computed = (Declaration) (new Declaration("width"))
+                .addChild((new AddOperation()).addChild(new PixelLiteral(1)).addChild(new PixelLiteral(2)));
+        Stylerule withSum = (Stylerule) (new Stylerule()).addChild(new ClassSelector(".sum")).addChild(computed);
+        Stylesheet stylesheet = new Stylesheet();
+        stylesheet.addChild(literalOnly);
+        stylesheet.addChild(withSum);
+
+        AST result = new Evaluator().apply(new AST(stylesheet));
+        assertSame(literalOnly, result.root.body.get(0));
+        Stylerule evaluated = (Stylerule) result.root.body.get(1);
+        assertNotSame(withSum, evaluated);
+        assertSame(withSum.selectors.get(0), evaluated.selectors.get(0));
+        assertSame(computed.property, ((Declaration) evaluated.body.get(0)).property);
+        assertEquals(new PixelLiteral(3), ((Declaration) evaluated.body.get(0)).expression);
+        assertTrue(computed.expression instanceof AddOperation);
+    }
+
+    @Test
+    void testColourArithmetic() {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString("Base := #336699;\n"
+                + "p {\n"
+                + "  color: Base + #111111;\n"
+                + "  background-color: Base - 100%;\n"
+                + "  border-color: 2 * Base + 50%;\n"
+                + "}\n"
+                + "a { color: #FF000080 * 50%; }");
+        assertTrue(pipeline.check(), () -> pipeline.getErrors().toString());
+        pipeline.transform();
+
+        assertEquals("p {\n"
+                + "  color: #4477aa;\n"
+                + "  background-color: #000000;\n"
+                + "  border-color: #b3e6ff;\n"
+                + "}\n\n"
+                + "a {\n"
+                + "  color: #7f000080;\n"
+                + "}\n\n", pipeline.generate());
+    }
+
+    @Test
+    void testUnitsAndDecimals() {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString("Gap := 1.5rem;\n"
+                + "p {\n"
+                + "  padding: Gap * 2;\n"
+                + "  font-size: 0.75em + 0.5em;\n"
+                + "  width: 10px * 1.5 - 0.25px;\n"
+                + "}");
+        assertTrue(pipeline.check(), () -> pipeline.getErrors().toString());
+        pipeline.transform();
+        assertEquals("p {\n"
+                + "  padding: 3rem;\n"
+                + "  font-size: 1.25em;\n"
+                + "  width: 14.75px;\n"
+                + "}\n\n", pipeline.generate());
+
+        Pipeline mixed = new Pipeline();
+        mixed.parseString("p { width: 1em + 1px; }");
+        assertFalse(mixed.check());
+    }
+}
@@ -0,0 +1,93 @@
+package nl.han.ica.icss.watch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WatchCompilerTest {
+
+    @Test
+    void testRecompilesOnlyChangedContent(@TempDir Path dir) throws IOException {
+        Path source = dir.resolve("theme.icss");
+        Files.writeString(source, "p { width: 10px; }");
+        WatchCompiler compiler = new WatchCompiler(dir);
+
+        assertTrue(compiler.compileIfChanged(source));
+        Path output = dir.resolve("theme.css");
+        assertEquals("p {\n  width: 10px;\n}\n\n", Files.readString(output));
+
+        // zelfde inhoud opnieuw geschreven: niet opnieuw compileren
+        Files.writeString(source, "p { width: 10px; }");
+        assertFalse(compiler.compileIfChanged(source));
+
+        Files.writeString(source, "p { width: 20px; }");
+        assertTrue(compiler.compileIfChanged(source));
+        assertEquals("p {\n  width: 20px;\n}\n\n", Files.readString(output));
+    }
+
+    @Test
+    void testFailedWriteIsRetried(@TempDir Path dir) throws IOException {
+        Path source = dir.resolve("theme.icss");
+        Files.writeString(source, "p { width: 10px; }");
+        // een map met inhoud op de plek van de uitvoer: het schrijven mislukt
+        Path output = dir.resolve("theme.css");
+        Files.createDirectories(output.resolve("blocked"));
+        WatchCompiler compiler = new WatchCompiler(dir);
+
+        assertTrue(compiler.compileIfChanged(source));
+        assertTrue(Files.isDirectory(output));
+
+        Files.delete(output.resolve("blocked"));
+        Files.delete(output);
+        // zelfde inhoud, maar de vorige keer is er niets geschreven
+        assertTrue(compiler.compileIfChanged(source));
+        assertEquals("p {\n  width: 10px;\n}\n\n", Files.readString(output));
+        compiler.close();
+    }
+
+    @Test
+    void testNewDirectoriesAreWalked(@TempDir Path dir, @TempDir Path outside) throws Exception {
+        WatchCompiler compiler = new WatchCompiler(dir);
+        Thread watching = new Thread(() -> {
+            try {
+                compiler.run();
+            } catch (IOException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        watching.start();
+        try {
+            // een hele boom in één keer neerzetten, zoals bij uitpakken of verplaatsen
+            Path tree = outside.resolve("theme");
+            Files.createDirectories(tree.resolve("nested"));
+            Files.writeString(tree.resolve("nested/inner.icss"), "p { width: 1px; }");
+            Files.move(tree, dir.resolve("theme"));
+
+            Path nested = dir.resolve("theme/nested");
+            awaitFile(nested.resolve("inner.css"));
+            assertEquals("p {\n  width: 1px;\n}\n\n", Files.readString(nested.resolve("inner.css")));
+
+            // de submap is ook geregistreerd
+            Files.writeString(nested.resolve("later.icss"), "a { width: 2px; }");
+            awaitFile(nested.resolve("later.css"));
+        } finally {
+            compiler.close();
+            watching.join(10_000);
+        }
+        assertFalse(watching.isAlive());
+    }
+
+    private static void awaitFile(Path file) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (!Files.exists(file) && System.nanoTime() < end) {
+            Thread.sleep(10);
+        }
+        assertTrue(Files.exists(file), file + " was not written");
+    }
+}